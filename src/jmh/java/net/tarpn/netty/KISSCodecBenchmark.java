@@ -0,0 +1,106 @@
+package net.tarpn.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.tarpn.frame.impl.KISS;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the byte at a time KISS escaping and un-escaping against {@link KISSScanner} using some
+ * captured NODES broadcasts. The byte at a time versions are the same loops the codec used to have.
+ *
+ * Run from the project directory so the data files can be found.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KISSCodecBenchmark {
+
+    @Param({"data/doug-nodes.bin", "data/tadd-nodes-part-1.bin", "data/tadd-nodes-part-2.bin"})
+    public String nodesFile;
+
+    private byte[] packet;
+    private ByteBuf payload;
+    private ByteBuf framed;
+    private ByteBuf out;
+
+    @Setup
+    public void setup() throws IOException {
+        packet = Files.readAllBytes(Paths.get(nodesFile));
+        payload = Unpooled.wrappedBuffer(packet);
+        framed = Unpooled.buffer(packet.length * 2 + 3);
+        framed.writeByte(KISS.Protocol.FEND.asByte());
+        framed.writeByte(KISS.Command.Data.asByte());
+        KISSScanner.escape(payload, payload.readerIndex(), payload.writerIndex(), framed);
+        framed.writeByte(KISS.Protocol.FEND.asByte());
+        out = Unpooled.buffer(packet.length * 2 + 3);
+    }
+
+    @Benchmark
+    public int escapeBytewise() {
+        out.clear();
+        for (int i = 0; i < packet.length; i++) {
+            int b = packet[i];
+            if (KISS.Protocol.FEND.equalsTo(b)) {
+                out.writeByte(KISS.Protocol.FESC.asByte());
+                out.writeByte(KISS.Protocol.TFEND.asByte());
+            } else if (KISS.Protocol.FESC.equalsTo(b)) {
+                out.writeByte(KISS.Protocol.FESC.asByte());
+                out.writeByte(KISS.Protocol.TFESC.asByte());
+            } else {
+                out.writeByte((byte) b);
+            }
+        }
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int escapeScanner() {
+        out.clear();
+        KISSScanner.escape(payload, payload.readerIndex(), payload.writerIndex(), out);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int unescapeBytewise() {
+        out.clear();
+        int len = framed.writerIndex();
+        int idx = 1;
+        // Find the closing FEND
+        while (idx < len && !KISS.Protocol.FEND.equalsTo(framed.getByte(idx))) {
+            idx++;
+        }
+        int frameEnd = idx;
+        boolean inEscape = false;
+        for (idx = 2; idx < frameEnd; idx++) {
+            byte b = framed.getByte(idx);
+            if (KISS.Protocol.FESC.equalsTo(b)) {
+                inEscape = true;
+            } else {
+                if (inEscape) {
+                    if (KISS.Protocol.TFEND.equalsTo(b)) b = KISS.Protocol.FEND.asByte();
+                    if (KISS.Protocol.TFESC.equalsTo(b)) b = KISS.Protocol.FESC.asByte();
+                    inEscape = false;
+                }
+                out.writeByte(b);
+            }
+        }
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int unescapeScanner() {
+        out.clear();
+        int frameEnd = KISSScanner.indexOfFEND(framed, 1, framed.writerIndex());
+        KISSScanner.unescape(framed, 2, frameEnd, out);
+        return out.writerIndex();
+    }
+}
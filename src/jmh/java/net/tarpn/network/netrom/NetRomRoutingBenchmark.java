@@ -0,0 +1,103 @@
+package net.tarpn.network.netrom;
+
+import net.tarpn.config.impl.NetRomConfigImpl;
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.network.netrom.NetRomRoutingTable.Destination;
+import net.tarpn.network.netrom.NetRomRoutingTable.Destination.DestinationRoute;
+import net.tarpn.network.netrom.NetRomRoutingTable.Neighbor;
+import net.tarpn.packet.impl.AX25PacketReader;
+import net.tarpn.packet.impl.ax25.AX25Call;
+import net.tarpn.packet.impl.ax25.UIFrame;
+import org.apache.commons.configuration2.MapConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Forwarding lookups against a routing table built from the captured NODES broadcasts in data/. Compares
+ * {@link NetRomRoutingTable#routeToNeighbors(AX25Call)}, which is what forwarding a packet calls, with
+ * sorting each destination's routes and looking up their neighbors per packet, the way it used to.
+ *
+ * Run from the project directory so the data files can be found.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetRomRoutingBenchmark {
+
+  private static final int LOOKUPS = 4096;
+
+  private static final String[] NODES_FILES = {
+      "data/doug-nodes.bin", "data/tadd-nodes-part-1.bin", "data/tadd-nodes-part-2.bin"
+  };
+
+  private NetRomRoutingTable router;
+  private Map<AX25Call, Destination> destinations;
+  private Map<AX25Call, Neighbor> neighbors;
+  private AX25Call[] lookups;
+
+  @Setup
+  public void setup() throws IOException {
+    Map<String, Object> config = new HashMap<>();
+    config.put("node.call", "K4DBZ-2");
+    config.put("node.alias", "DAVID");
+    router = new NetRomRoutingTable(new NetRomConfigImpl(new MapConfiguration(config)),
+        portNum -> new PortConfigImpl(portNum, new MapConfiguration(Collections.emptyMap())), neighbor -> {});
+
+    // Hear each broadcast on its own port, so there are several routes to the common destinations
+    int port = 1;
+    for (String nodesFile : NODES_FILES) {
+      UIFrame uiFrame = (UIFrame) AX25PacketReader.parse(Files.readAllBytes(Paths.get(nodesFile)));
+      router.updateNodes(uiFrame.getSourceCall(), port++, NetRomNodes.read(uiFrame.getInfo()));
+    }
+
+    // Mostly known destinations, with some we have no route to
+    destinations = router.getDestinations();
+    neighbors = router.getNeighbors();
+    List<AX25Call> known = new ArrayList<>(destinations.keySet());
+    lookups = new AX25Call[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      lookups[i] = (i % 8 == 7) ? AX25Call.create("N0NE", i % 16) : known.get(i % known.size());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LOOKUPS)
+  public void routeToNeighbors(Blackhole bh) {
+    for (AX25Call destCall : lookups) {
+      bh.consume(router.routeToNeighbors(destCall));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LOOKUPS)
+  public void sortPerPacket(Blackhole bh) {
+    for (AX25Call destCall : lookups) {
+      Destination destination = destinations.get(destCall);
+      if (destination != null) {
+        bh.consume(destination.getSortedNeighbors()
+            .stream()
+            .map(DestinationRoute::getNextHop)
+            .map(neighbors::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList()));
+      } else {
+        bh.consume(Collections.emptyList());
+      }
+    }
+  }
+}
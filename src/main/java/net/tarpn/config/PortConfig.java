@@ -22,6 +22,14 @@ public interface PortConfig extends Configuration, NodeConfig {
 
     List<String> getKISSFlags();
 
+    /**
+     * The HDLC port (high nibble of the KISS command byte) this port uses. Multi-drop TNCs use this to carry
+     * several radio ports over a single serial device.
+     */
+    default int getKISSPort() {
+        return getInt("kiss.port", 0);
+    }
+
     int getI2CBus();
 
     int getI2CDeviceAddress();
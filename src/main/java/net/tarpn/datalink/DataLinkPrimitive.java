@@ -85,6 +85,20 @@ public class DataLinkPrimitive implements Primitive {
     return new DataLinkPrimitive(uiFrame.getSourceCall(), uiFrame.getDestCall(), Type.DL_UNIT_DATA, false, uiFrame, ErrorType.NONE);
   }
 
+  /**
+   * The link's send queue is full, stop writing data until a flow on indication
+   */
+  public static DataLinkPrimitive newFlowOffIndication(AX25Call remoteCall, AX25Call localCall) {
+    return new DataLinkPrimitive(remoteCall, localCall, Type.DL_FLOW_OFF, false, null, ErrorType.NONE);
+  }
+
+  /**
+   * The link's send queue has drained, writing can resume
+   */
+  public static DataLinkPrimitive newFlowOnIndication(AX25Call remoteCall, AX25Call localCall) {
+    return new DataLinkPrimitive(remoteCall, localCall, Type.DL_FLOW_ON, false, null, ErrorType.NONE);
+  }
+
   public static DataLinkPrimitive newErrorResponse(AX25Call remoteCall, AX25Call localCall, ErrorType error) {
     return new DataLinkPrimitive(remoteCall, localCall, Type.DL_ERROR, false, null, error);
   }
@@ -158,6 +172,8 @@ public class DataLinkPrimitive implements Primitive {
     DL_DISCONNECT(false),
     DL_DATA(true),
     DL_UNIT_DATA(true),
+    DL_FLOW_OFF(false),
+    DL_FLOW_ON(false),
     DL_ERROR(false);
 
     private final boolean hasData;
@@ -1,32 +1,87 @@
 package net.tarpn.netty;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import net.tarpn.frame.impl.KISS;
 import net.tarpn.frame.impl.KISSFrame;
-import net.tarpn.packet.impl.AX25PacketReader;
-import net.tarpn.packet.impl.ax25.AX25Packet;
+import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame;
+import net.tarpn.packet.impl.ax25.AX25PacketView;
+import net.tarpn.packet.impl.ax25.SSIDFlags;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
 /**
- * Decode an AX.25 packet from a frame
+ * Wrap the data of a frame in an {@link AX25PacketView}. Decoding the rest of the packet is left until
+ * {@link AX25PacketFilter} knows it is for us and {@link AX25StateHandler} knows which session it's part of.
+ *
+ * Frames too short to hold their address fields and a control byte are dropped here, so the view never has
+ * to deal with them.
+ *
+ * A {@link PooledKISSFrame} becomes a {@link PooledAX25PacketView} over the same buffer, so nothing is copied
+ * until {@link AX25StateHandler} decodes a frame that's for us. Whoever drops or decodes the view releases it.
  */
 public class AX25PacketDecoder extends MessageToMessageDecoder<KISSFrame> {
     private static final Logger LOG = LoggerFactory.getLogger(AX25PacketDecoder.class);
 
+    /**
+     * Destination, source and up to eight repeaters
+     */
+    static final int MAX_ADDRESSES = 10;
+
     @Override
     protected void decode(ChannelHandlerContext ctx, KISSFrame msg, List<Object> out) throws Exception {
         if (msg.getKissCommand().equals(KISS.Command.Data)) {
-            AX25Packet packet = AX25PacketReader.parse(msg.getData());
-            int port = ctx.channel().attr(Attributes.PortNumber).get();
-            LOG.info(packet.toLogString(port));
-            out.add(packet);
+            ByteBuf data = (msg instanceof PooledKISSFrame) ?
+                    ((PooledKISSFrame) msg).content() : Unpooled.wrappedBuffer(msg.getData());
+            if (controlIndex(data) == -1) {
+                LOG.debug("Dropping malformed AX.25 frame: " + msg);
+                return;
+            }
+            if (msg instanceof PooledKISSFrame) {
+                // The frame is released once we return, the view keeps its own reference
+                out.add(new PooledAX25PacketView(data.retain()));
+            } else {
+                out.add(new AX25PacketView(msg.getData()));
+            }
         } else {
             LOG.warn("Unexpected KISS: " + msg);
             // other commands
         }
     }
+
+    /**
+     * Find the control byte by walking the address fields until one has its last address bit set. I and UI
+     * frames must also have room for a PID after it.
+     *
+     * @return the offset of the control byte from the reader index, or -1 if the frame is malformed
+     */
+    static int controlIndex(ByteBuf data) {
+        int base = data.readerIndex();
+        int len = data.readableBytes();
+        for (int addr = 2; addr <= MAX_ADDRESSES; addr++) {
+            int ssidIdx = addr * 7 - 1;
+            if (ssidIdx >= len) {
+                return -1;
+            }
+            if (SSIDFlags.isLast(SSIDFlags.of(data.getByte(base + ssidIdx)))) {
+                int controlIdx = ssidIdx + 1;
+                if (controlIdx >= len) {
+                    return -1;
+                }
+                return hasInfo(data.getByte(base + controlIdx)) && controlIdx + 1 >= len ? -1 : controlIdx;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * True for an I or UI control byte (ignoring the P/F bit)
+     */
+    private static boolean hasInfo(byte control) {
+        return (control & 0x01) == 0 || (control & ~0x10) == UnnumberedFrame.ControlType.UI.asByte(false);
+    }
 }
@@ -2,6 +2,7 @@ package net.tarpn.netty;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageEncoder;
+import net.tarpn.config.PortConfig;
 import net.tarpn.frame.impl.KISS;
 import net.tarpn.frame.impl.KISSFrame;
 import net.tarpn.packet.impl.ax25.AX25Packet;
@@ -16,10 +17,20 @@ import java.util.List;
 public class AX25PacketEncoder extends MessageToMessageEncoder<AX25Packet> {
     private static final Logger LOG = LoggerFactory.getLogger(AX25PacketEncoder.class);
 
+    private final int hdlcPort;
+
+    public AX25PacketEncoder() {
+        this.hdlcPort = 0;
+    }
+
+    public AX25PacketEncoder(PortConfig portConfig) {
+        this.hdlcPort = portConfig.getKISSPort();
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, AX25Packet msg, List<Object> out) throws Exception {
         int port = ctx.channel().attr(Attributes.PortNumber).get();
         LOG.info("< " + msg.toLogString(port));
-        out.add(new KISSFrame(0, KISS.Command.Data, msg.getPayload()));
+        out.add(new KISSFrame(hdlcPort, KISS.Command.Data, msg.getPayload()));
     }
 }
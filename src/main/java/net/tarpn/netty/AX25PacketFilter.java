@@ -2,6 +2,7 @@ package net.tarpn.netty;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.TypeParameterMatcher;
 import net.tarpn.config.PortConfig;
 import net.tarpn.packet.impl.ax25.AX25Packet;
@@ -9,7 +10,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Drop any L2 packets not addressed to this node
+ * Drop any L2 packets not addressed to this node. Packets for us are passed on as they are, the
+ * {@link AX25StateHandler} decodes them once it knows which kind of link they belong to.
  */
 public class AX25PacketFilter extends ChannelInboundHandlerAdapter {
 
@@ -28,10 +30,13 @@ public class AX25PacketFilter extends ChannelInboundHandlerAdapter {
             AX25Packet packet = (AX25Packet) msg;
             if (packet.getDestCall().callMatches(portConfig.getNodeCall())) {
                 // Only pass through packets for us
-                ctx.fireChannelRead(msg);
+                ctx.fireChannelRead(packet);
             } else {
-                LOG.info("Dropping packet not for us: " + packet.toLogString(portConfig.getPortNumber()));
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Dropping packet not for us: " + packet.toLogString(portConfig.getPortNumber()));
+                }
                 // TODO record who we heard though (ID and CQ packets)
+                ReferenceCountUtil.release(packet);
             }
         }
     }
@@ -4,6 +4,7 @@ import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.TypeParameterMatcher;
 import net.tarpn.config.PortConfig;
 import net.tarpn.datalink.DataLinkPrimitive;
@@ -13,32 +14,46 @@ import net.tarpn.netty.ax25.Multiplexer;
 import net.tarpn.netty.ax25.PortChannel;
 import net.tarpn.packet.impl.ax25.*;
 import net.tarpn.packet.impl.ax25.handlers.*;
+import net.tarpn.util.TimerWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
  * Reads incoming AX.25 packets and handles them with a state machine. Outputs can be
  * outgoing AX.25 packets, incoming DL events, or both.
+ *
+ * All of the state for a port is confined to the channel's event loop. Packets, DL primitives, timer
+ * expiries, and internal events are all processed on that thread, so there is no locking.
+ *
+ * Events are run to completion. Any events generated while processing one (IFRAME_READY from a DL_DATA,
+ * or a DL_DATA written back by an application reacting to a DL event) are queued and processed in the same
+ * turn of the event loop, up to {@link #MAX_EVENTS_PER_TURN}. After that, the rest are picked up by a new
+ * task so a busy port can't starve the others on the loop.
  */
 public class AX25StateHandler extends ChannelDuplexHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(AX25StateHandler.class);
 
+    static final int MAX_EVENTS_PER_TURN = 64;
+
     private final Map<AX25State.State, StateHandler> handlers = new HashMap<>();
-    private final Map<AX25Call, AX25State> sessions = new ConcurrentHashMap<>();
-    private final Queue<AX25StateEvent> internalStateEvents = new ArrayDeque<>();
-    private final ReentrantLock stateLock = new ReentrantLock();
+    private final Map<AX25Call, AX25State> sessions = new HashMap<>();
+    private final Queue<AX25StateEvent> pendingEvents = new ArrayDeque<>();
+    private boolean dispatching = false;
 
     private final PortConfig portConfig;
 
+    /**
+     * Timers for all the sessions on this port, driven by the channel's event loop
+     */
+    private TimerWheel timerWheel;
+
     //private PortChannel portChannel;
 
     public AX25StateHandler(PortConfig portConfig) {
@@ -51,16 +66,27 @@ public class AX25StateHandler extends ChannelDuplexHandler {
     }
 
     /**
-     * This is called when we read a decoded AX.25 packet
+     * This is called when we read an AX.25 packet. Packets still in their raw form are decoded here since
+     * we need to know if the session is using modulo 128 control fields.
      */
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         TypeParameterMatcher matcher = TypeParameterMatcher.get(AX25Packet.class);
         if (matcher.match(msg)) {
-            LOG.debug("AX25 read: " + msg);
-            AX25StateEvent event = toEvent((AX25Packet) msg);
+            AX25Packet packet = (AX25Packet) msg;
+            if (packet instanceof AX25PacketView) {
+                AX25State session = sessions.get(packet.getSourceCall());
+                try {
+                    packet = ((AX25PacketView) packet).decode(session != null && session.isExtended());
+                } finally {
+                    // Decoding copies the bytes out, so we're done with any buffer behind the view
+                    ReferenceCountUtil.release(msg);
+                }
+            }
+            LOG.info(packet.toLogString(portConfig.getPortNumber()));
+            AX25StateEvent event = toEvent(packet);
             if (event != null) {
-                processStateEvent(ctx, event);
+                dispatch(ctx, event);
             }
         } else {
             ctx.fireChannelRead(msg);
@@ -74,7 +100,7 @@ public class AX25StateHandler extends ChannelDuplexHandler {
             DataLinkPrimitive dl = (DataLinkPrimitive) msg;
             AX25StateEvent event = toEvent(dl);
             if (event != null) {
-                processStateEvent(ctx, event);
+                dispatch(ctx, event);
             }
         } else {
             ctx.write(msg);
@@ -84,6 +110,8 @@ public class AX25StateHandler extends ChannelDuplexHandler {
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        ctx.channel().attr(Attributes.Stats).setIfAbsent(new LinkStats());
+        timerWheel = new TimerWheel(ctx.executor());
         if (ctx.channel().isActive() && ctx.channel().isRegistered()) {
             // channelActive() event has been fired already, which means this.channelActive() will
             // not be invoked. We have to initialize here instead.
@@ -104,7 +132,7 @@ public class AX25StateHandler extends ChannelDuplexHandler {
         /*portChannel = multiplexer.bind(portConfig.getPortNumber(), datalinkPrimitive -> {
             AX25StateEvent event = toEvent(datalinkPrimitive);
             if (event != null) {
-                processStateEvent(ctx, event);
+                dispatch(ctx, event);
             }
         });*/
 
@@ -129,18 +157,12 @@ public class AX25StateHandler extends ChannelDuplexHandler {
     }
 
     /**
-     * Create a scheduled task to flush and pending AX25 state events. This includes things
-     * like T1 and T3 timeouts
+     * Schedule the periodic ID broadcast on the event loop
      *
-     * TODO let the scheduled rate be configured
      * @param ctx
      * @throws Exception
      */
     private void initialize(ChannelHandlerContext ctx) throws Exception {
-        // Check pending internal events that ned processing
-        ctx.executor().scheduleAtFixedRate(
-                () -> flushStateEvents(ctx),1000, 1000, TimeUnit.MILLISECONDS);
-
         // Schedule ID broadcast for FCC rules
         ctx.executor().scheduleAtFixedRate(() -> {
             AX25StateEvent idStateEvent = AX25StateEvent.createUnitDataEvent(
@@ -148,10 +170,43 @@ public class AX25StateHandler extends ChannelDuplexHandler {
                     AX25Packet.Protocol.NO_LAYER3,
                     portConfig.getIdMessage().getBytes(StandardCharsets.US_ASCII));
 
-            internalStateEvents.add(idStateEvent);
+            dispatch(ctx, idStateEvent);
         }, 5, portConfig.getIdInterval(), TimeUnit.SECONDS);
     }
 
+    /**
+     * Process an event, along with any further events it generates. If we're already processing an event
+     * further up the stack, this just queues it to be processed once that one is done.
+     */
+    private void dispatch(ChannelHandlerContext ctx, AX25StateEvent stateEvent) {
+        pendingEvents.add(stateEvent);
+        if (!dispatching) {
+            drainEvents(ctx);
+        }
+    }
+
+    private void drainEvents(ChannelHandlerContext ctx) {
+        dispatching = true;
+        try {
+            int processed = 0;
+            AX25StateEvent event;
+            while ((event = pendingEvents.poll()) != null) {
+                processStateEvent(ctx, event);
+                if (++processed >= MAX_EVENTS_PER_TURN && !pendingEvents.isEmpty()) {
+                    LOG.debug("Processed " + processed + " AX.25 events, deferring the rest");
+                    ctx.executor().execute(() -> {
+                        if (!dispatching) {
+                            drainEvents(ctx);
+                        }
+                    });
+                    break;
+                }
+            }
+        } finally {
+            dispatching = false;
+        }
+    }
+
     /**
      * Send an incoming or outgoing state event through the state machine. This can result
      * in new DL events to be passed up to layer 2, additional state machine events,
@@ -161,70 +216,50 @@ public class AX25StateHandler extends ChannelDuplexHandler {
      * @param stateEvent
      */
     private void processStateEvent(ChannelHandlerContext ctx, AX25StateEvent stateEvent) {
-        List<DataLinkPrimitive> dlEvents = new ArrayList<>();
-        stateLock.lock();
-        try {
-            AX25State state = sessions.computeIfAbsent(stateEvent.getRemoteCall(),
-                    ax25Call -> new AX25State(
-                            stateEvent.getRemoteCall().toString(),
-                            stateEvent.getRemoteCall(),
-                            portConfig.getNodeCall(),
-                            portConfig,
-                            internalStateEvent -> {
-                                // These are events like IFRAME_READY, T1_TIMER, and T3_TIMER
-                                // See AX25StateEvent.Type for a full list
-                                internalStateEvents.add(internalStateEvent);
-                                //flushStateEvents(ctx);
-
+        LinkStats stats = ctx.channel().attr(Attributes.Stats).get();
+        if (stats != null && stateEvent.getType().equals(AX25StateEvent.Type.T1_EXPIRE)) {
+            stats.t1Expired();
+        }
+        AX25State state = sessions.computeIfAbsent(stateEvent.getRemoteCall(),
+                ax25Call -> new AX25State(
+                        stateEvent.getRemoteCall().toString(),
+                        stateEvent.getRemoteCall(),
+                        portConfig.getNodeCall(),
+                        portConfig,
+                        internalStateEvent -> {
+                            // These are events like IFRAME_READY, T1_TIMER, and T3_TIMER
+                            // See AX25StateEvent.Type for a full list
+                            if (ctx.executor().inEventLoop()) {
+                                dispatch(ctx, internalStateEvent);
+                            } else {
+                                ctx.executor().execute(() -> dispatch(ctx, internalStateEvent));
                             }
-                    )
-            );
-            StateHandler handler = handlers.get(state.getState());
-            LOG.info("State Before " + state.getState() + " " + stateEvent);
-            AX25State.State newState = handler.onEvent(state, stateEvent, outgoing -> {
-                // AX25 packet needs to get written out. This is typically things related
-                // to connected mode operation (SABM, UA, RR, etc)
-                if (ctx.channel().isWritable()) {
-                    //LOG.info("Outgoing immediately: " + outgoing);
-                    ctx.writeAndFlush(outgoing);
-                } else {
-                    // TODO does this ever happen?
-                    throw new RuntimeException("Not ready to write");
-                }
-            });
-            if (state.getState() != newState) {
-                LOG.info("AX.25 state for " + stateEvent.getRemoteCall() + " transitioning from " +
-                        state.getState() + " to " + newState);
+                        },
+                        timerWheel
+                )
+        );
+        StateHandler handler = handlers.get(state.getState());
+        LOG.info("State Before " + state.getState() + " " + stateEvent);
+        AX25State.State newState = handler.onEvent(state, stateEvent, outgoing -> {
+            // AX25 packet needs to get written out. This is typically things related
+            // to connected mode operation (SABM, UA, RR, etc). If the TNC is busy these
+            // will wait in the KISSTransmitScheduler
+            if (stats != null && outgoing instanceof IFrame) {
+                stats.iFrameSent();
             }
-            state.setState(newState);
-            LOG.info("State After " + state.getState() + " " + stateEvent);
-
-            DataLinkPrimitive dlEvent;
-            while ((dlEvent = state.pollDLEvents()) != null) {
-                dlEvents.add(dlEvent);
-            }
-        } finally {
-            stateLock.unlock();
+            ctx.writeAndFlush(outgoing);
+        });
+        if (state.getState() != newState) {
+            LOG.info("AX.25 state for " + stateEvent.getRemoteCall() + " transitioning from " +
+                    state.getState() + " to " + newState);
         }
+        state.setState(newState);
+        LOG.info("State After " + state.getState() + " " + stateEvent);
 
         // Pass DL events up to next handler
-        dlEvents.forEach(ctx::fireChannelRead);
-
-        // Flush any internal state events generated
-        flushStateEvents(ctx);
-    }
-
-    /**
-     * Process any pending {@link AX25StateEvent} through the state machine. This
-     * may result in new packets going out.
-     * @param ctx
-     */
-    private void flushStateEvents(ChannelHandlerContext ctx) {
-        AX25StateEvent internalEvent;
-        while ((internalEvent = internalStateEvents.poll()) != null) {
-            //LOG.info("Internal AX.25 Event: " + internalEvent);
-            // State event, needs to reprocess
-            processStateEvent(ctx, internalEvent);
+        DataLinkPrimitive dlEvent;
+        while ((dlEvent = state.pollDLEvents()) != null) {
+            ctx.fireChannelRead(dlEvent);
         }
     }
 
@@ -252,6 +287,10 @@ public class AX25StateHandler extends ChannelDuplexHandler {
                         event = AX25StateEvent.createIncomingEvent(ax25Packet, AX25StateEvent.Type.AX25_REJ);
                         break;
                     }
+                    case SREJ: {
+                        event = AX25StateEvent.createIncomingEvent(ax25Packet, AX25StateEvent.Type.AX25_SREJ);
+                        break;
+                    }
                     default:
                         event = AX25StateEvent.createIncomingEvent(ax25Packet, AX25StateEvent.Type.AX25_UNKNOWN);
                         break;
@@ -263,6 +302,10 @@ public class AX25StateHandler extends ChannelDuplexHandler {
                         event = AX25StateEvent.createIncomingEvent(ax25Packet, AX25StateEvent.Type.AX25_SABM);
                         break;
                     }
+                    case SABME: {
+                        event = AX25StateEvent.createIncomingEvent(ax25Packet, AX25StateEvent.Type.AX25_SABME);
+                        break;
+                    }
                     case DISC: {
                         event = AX25StateEvent.createIncomingEvent(ax25Packet, AX25StateEvent.Type.AX25_DISC);
                         break;
@@ -8,6 +8,7 @@ public class Attributes {
     public static final AttributeKey<Integer> PortNumber = AttributeKey.newInstance("PortNumber");
     public static final AttributeKey<AX25Call> NodeCall = AttributeKey.newInstance("NodeCall");
     public static final AttributeKey<String> NodeAlias = AttributeKey.newInstance("NodeAlias");
+    public static final AttributeKey<LinkStats> Stats = AttributeKey.newInstance("Stats");
 
 
 }
@@ -9,6 +9,7 @@ import net.tarpn.netty.ax25.AX25Address;
 import net.tarpn.netty.ax25.Multiplexer;
 import net.tarpn.netty.ax25.PortChannel;
 import net.tarpn.packet.impl.ax25.AX25Packet;
+import net.tarpn.util.TimerWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +30,7 @@ public class DataLinkHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
         AX25Address bindAddress = new AX25Address(portConfig.getPortNumber(), portConfig.getNodeCall());
-        portChannel = multiplexer.bind(bindAddress, datalinkPrimitive -> {
+        portChannel = multiplexer.bind(bindAddress, new TimerWheel(ctx.executor()), datalinkPrimitive -> {
             ctx.writeAndFlush(datalinkPrimitive);
         });
         super.channelRegistered(ctx);
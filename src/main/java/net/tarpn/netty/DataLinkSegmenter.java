@@ -0,0 +1,159 @@
+package net.tarpn.netty;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.ScheduledFuture;
+import net.tarpn.config.PortConfig;
+import net.tarpn.datalink.DataLinkPrimitive;
+import net.tarpn.packet.impl.ax25.AX25Call;
+import net.tarpn.packet.impl.ax25.AX25Packet.Protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fit outgoing DL_DATA to the port's PACLEN ("l2.paclen"), the most info we put in one I frame.
+ *
+ * Writes larger than PACLEN are split into PACLEN sized pieces. Small writes to the same link which arrive
+ * within "l2.merge.delay" milliseconds of each other are merged, so a chatty application doesn't send a
+ * frame per line. A merged frame goes out as soon as it's full, or once the delay has passed.
+ *
+ * Only data without a layer 3 protocol is a byte stream we can cut up like this. Anything else (like
+ * NET/ROM) has its own framing and is passed through as it is, after any merged data for the same link.
+ */
+public class DataLinkSegmenter extends ChannelOutboundHandlerAdapter {
+
+    private static final int DEFAULT_PACLEN = 128;
+    private static final int DEFAULT_MERGE_DELAY_MS = 10;
+
+    /**
+     * Data waiting to be merged with the next write to the same link
+     */
+    private static final class Segment {
+        private final AX25Call remoteCall;
+        private final AX25Call localCall;
+        private final byte[] data;
+        private final List<ChannelPromise> promises = new ArrayList<>();
+        private int length = 0;
+        private ScheduledFuture<?> flushTask = null;
+
+        private Segment(AX25Call remoteCall, AX25Call localCall, int pacLen) {
+            this.remoteCall = remoteCall;
+            this.localCall = localCall;
+            this.data = new byte[pacLen];
+        }
+    }
+
+    private final Map<AX25Call, Segment> pending = new HashMap<>();
+    private final int pacLen;
+    private final long mergeDelayMs;
+
+    public DataLinkSegmenter(PortConfig portConfig) {
+        this.pacLen = Math.max(1, portConfig.getInt("l2.paclen", DEFAULT_PACLEN));
+        this.mergeDelayMs = Math.max(0, portConfig.getInt("l2.merge.delay", DEFAULT_MERGE_DELAY_MS));
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof DataLinkPrimitive) {
+            DataLinkPrimitive dl = (DataLinkPrimitive) msg;
+            if (isStream(dl)) {
+                append(ctx, dl, promise);
+            } else {
+                // Keep things in order, e.g. data written before a DL_DISCONNECT goes first
+                Segment segment = pending.get(dl.getRemoteCall());
+                if (segment != null) {
+                    emit(ctx, segment);
+                }
+                ctx.write(msg, promise);
+            }
+        } else {
+            ctx.write(msg, promise);
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        emitAll(ctx);
+        ctx.flush();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        emitAll(ctx);
+        ctx.flush();
+    }
+
+    private static boolean isStream(DataLinkPrimitive dl) {
+        return dl.getType().equals(DataLinkPrimitive.Type.DL_DATA)
+                && dl.getLinkInfo() != null
+                && dl.getLinkInfo().getProtocol().equals(Protocol.NO_LAYER3);
+    }
+
+    /**
+     * Add the data to this link's segment, writing out each segment as it fills up
+     */
+    private void append(ChannelHandlerContext ctx, DataLinkPrimitive dl, ChannelPromise promise) {
+        byte[] info = dl.getLinkInfo().getInfo();
+        Segment segment = pending.get(dl.getRemoteCall());
+        int offset = 0;
+        while (offset < info.length) {
+            if (segment == null) {
+                segment = new Segment(dl.getRemoteCall(), dl.getLocalCall(), pacLen);
+                pending.put(segment.remoteCall, segment);
+            }
+            int count = Math.min(pacLen - segment.length, info.length - offset);
+            System.arraycopy(info, offset, segment.data, segment.length, count);
+            segment.length += count;
+            offset += count;
+            if (segment.length == pacLen) {
+                emit(ctx, segment);
+                segment = null;
+            }
+        }
+
+        if (segment == null) {
+            promise.trySuccess();
+        } else if (mergeDelayMs == 0) {
+            segment.promises.add(promise);
+            emit(ctx, segment);
+        } else {
+            segment.promises.add(promise);
+            if (segment.flushTask == null) {
+                Segment waiting = segment;
+                segment.flushTask = ctx.executor().schedule(() -> {
+                    waiting.flushTask = null;
+                    if (pending.get(waiting.remoteCall) == waiting) {
+                        emit(ctx, waiting);
+                        ctx.flush();
+                    }
+                }, mergeDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void emit(ChannelHandlerContext ctx, Segment segment) {
+        pending.remove(segment.remoteCall);
+        if (segment.flushTask != null) {
+            segment.flushTask.cancel(false);
+            segment.flushTask = null;
+        }
+        if (segment.length > 0) {
+            ctx.write(DataLinkPrimitive.newDataRequest(segment.remoteCall, segment.localCall,
+                    Protocol.NO_LAYER3, Arrays.copyOf(segment.data, segment.length)));
+        }
+        segment.promises.forEach(ChannelPromise::trySuccess);
+    }
+
+    private void emitAll(ChannelHandlerContext ctx) {
+        for (Segment segment : new ArrayList<>(pending.values())) {
+            emit(ctx, segment);
+        }
+    }
+}
@@ -1,135 +1,222 @@
 package net.tarpn.netty;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
-import io.netty.handler.codec.DecoderException;
 import net.tarpn.config.PortConfig;
 import net.tarpn.frame.impl.KISS;
 import net.tarpn.frame.impl.KISSFrame;
-import net.tarpn.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.function.Consumer;
 
+/**
+ * Decode KISS frames from a stream of bytes.
+ *
+ * By default each frame is copied into a new {@link KISSFrame}. If "kiss.zero.copy" is set for the port, frames
+ * are instead emitted as {@link PooledKISSFrame} which share the bytes of the input buffer (only frames containing
+ * escape sequences get copied). These must be released by the downstream handlers.
+ *
+ * Delimiters and escapes are located with {@link KISSScanner} rather than looking at each byte. The decoder keeps
+ * its place between reads (like {@link net.tarpn.frame.impl.KISSFrameReader}), so a frame that trickles in over
+ * many reads is only scanned once. While a frame has no escapes, its bytes are left in the input buffer and only
+ * the scan position is remembered. Once an escape is seen, the frame is un-escaped into its own buffer as the
+ * bytes arrive.
+ */
 public class KISSFrameDecoder extends ByteToMessageDecoder {
 
     private static final Logger LOG = LoggerFactory.getLogger(KISSFrameDecoder.class);
 
     private final PortConfig portConfig;
+    private final boolean zeroCopy;
+
+    /**
+     * Have we seen a FEND yet? Anything before the first one is discarded
+     */
+    private boolean synced = false;
+
+    /**
+     * Are we in the middle of a frame?
+     */
+    private boolean inFrame = false;
+
+    /**
+     * Number of bytes past the reader index which are known to be part of the current frame
+     */
+    private int scanOffset = 0;
+
+    /**
+     * The un-escaped frame data, once we've seen an escape in the current frame
+     */
+    private ByteBuf unescaped = null;
+
+    private int commandByte = 0;
+
+    private boolean inEscape = false;
 
     public KISSFrameDecoder(PortConfig portConfig) {
         this.portConfig = portConfig;
+        this.zeroCopy = portConfig.getBoolean("kiss.zero.copy", false);
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         LOG.trace("KISS read");
 
-        int len = in.readableBytes();
-        byte b;
-        boolean inFrame = false;
+        final int end = in.writerIndex();
+        while (in.isReadable()) {
+            if (!inFrame) {
+                if (!synced) {
+                    // Consume bytes until we reach a FEND
+                    int start = in.readerIndex();
+                    int fend = KISSScanner.indexOfFEND(in, start, end);
+                    int discardTo = (fend == -1) ? end : fend;
+                    if (discardTo != start) {
+                        LOG.warn("Discarding " + (discardTo - start) + " bytes which appeared before the frame delimiter: " +
+                                ByteBufUtil.hexDump(in, start, discardTo - start));
+                        in.readerIndex(discardTo);
+                    }
+                    if (fend == -1) {
+                        return;
+                    }
+                    synced = true;
+                }
+
+                // Skip over a sequence of FENDs
+                int idx = in.readerIndex();
+                while (idx < end && KISS.Protocol.FEND.equalsTo(in.getByte(idx))) {
+                    idx++;
+                }
+                in.readerIndex(idx);
+                if (idx == end) {
+                    return;
+                }
+                inFrame = true;
+                scanOffset = 0;
+            }
 
+            if (unescaped == null) {
+                // The frame is still in the input buffer, starting at the reader index. The command byte
+                // is never escaped so the scan always starts after it
+                int frameStart = in.readerIndex();
+                int special = KISSScanner.indexOfSpecial(in, frameStart + Math.max(scanOffset, 1), end);
+                if (special == -1) {
+                    // Partial frame, remember how far we got and wait for more data
+                    scanOffset = end - frameStart;
+                    return;
+                }
+                if (KISS.Protocol.FEND.equalsTo(in.getByte(special))) {
+                    decodeFrame(in.getByte(frameStart), in.retainedSlice(frameStart + 1, special - frameStart - 1), out::add);
+                    in.readerIndex(special + 1);
+                    resetFrame();
+                    continue;
+                }
 
-        int idx = 0;
-        // Consume bytes until we reach a FEND
-        while (idx < len) {
-            b = in.getByte(idx);
-            if (KISS.Protocol.FEND.equalsTo(b)) {
-                break;
-            } else {
-                // keep consuming
-                idx++;
+                // Found an escape, switch to copying the frame into its own buffer
+                commandByte = in.readByte();
+                unescaped = ctx.alloc().buffer();
+                in.readBytes(unescaped, special - in.readerIndex());
+                in.skipBytes(1);
+                inEscape = true;
             }
-        }
 
-        if (idx != 0) {
-            byte[] discarded = new byte[idx];
-            in.getBytes(0, discarded);
-            in.readerIndex(idx);
-            LOG.warn("Discarding " + idx + " bytes which appeared before the frame delimiter: " + Util.toHexString(discarded));
+            if (unescapeFrame(in, end)) {
+                ByteBuf frame = unescaped;
+                unescaped = null;
+                decodeFrame((byte) commandByte, frame, out::add);
+                resetFrame();
+            }
         }
+    }
 
-        int frameStart = -1;
-        int frameEnd;
-        while(idx < len) {
-            b = in.getByte(idx++);
-            if(KISS.Protocol.FEND.equalsTo(b)) {
-                if(inFrame) {
-                    // Finished consuming a frame
-                    frameEnd = idx;
-                    decodeFrame(in, frameStart, frameEnd-1, out::add);
-                    in.readerIndex(frameEnd);
-                    frameStart = -1;
-                    inFrame = false;
-                } else {
-                    // Keep consuming a sequence of FENDs
+    /**
+     * Consume bytes from the input into the un-escaped frame buffer until we reach a FEND or run out of input.
+     *
+     * @return true if the end of the frame was reached
+     */
+    private boolean unescapeFrame(ByteBuf in, int end) {
+        while (in.isReadable()) {
+            if (inEscape) {
+                byte b = in.getByte(in.readerIndex());
+                if (KISS.Protocol.FEND.equalsTo(b)) {
+                    // Dangling escape, let the FEND end the frame
+                    inEscape = false;
                     continue;
                 }
+                in.skipBytes(1);
+                if (KISS.Protocol.TFEND.equalsTo(b)) b = KISS.Protocol.FEND.asByte();
+                if (KISS.Protocol.TFESC.equalsTo(b)) b = KISS.Protocol.FESC.asByte();
+                unescaped.writeByte(b);
+                inEscape = false;
+            }
+
+            int start = in.readerIndex();
+            int special = KISSScanner.indexOfSpecial(in, start, end);
+            if (special == -1) {
+                in.readBytes(unescaped, end - start);
+                return false;
+            }
+            in.readBytes(unescaped, special - start);
+            if (KISS.Protocol.FEND.equalsTo(in.readByte())) {
+                return true;
             } else {
-                if (!inFrame) {
-                    // Start of a frame
-                    inFrame = true;
-                    frameStart = idx - 1;
-                }
+                inEscape = true;
             }
         }
+        return false;
     }
 
-    void decodeFrame(ByteBuf in, int frameStart, int frameEnd, Consumer<KISSFrame> frameConsumer) {
-        boolean inEscape = false;
-        KISS.Command kissCommand = KISS.Command.Unknown;
-        int hdlcPort = -1;
-        if (frameStart > 0 && frameEnd > frameStart) {
-            int frameIdx = frameStart;
-            ByteBuffer frame = ByteBuffer.allocate(frameEnd - frameStart);
-            int crc = 0;
-            byte b = in.getByte(frameIdx++);
-            crc ^= b;
-            hdlcPort = (b >> 4) & 0x0F;
-            kissCommand = KISS.Command.fromInt(b & 0x0F);
-            while (frameIdx < frameEnd) {
-                b = in.getByte(frameIdx++);
-                if(KISS.Protocol.FESC.equalsTo(b)) {
-                    inEscape = true;
-                } else {
-                    if(inEscape) {
-                        if (KISS.Protocol.TFEND.equalsTo(b)) b = KISS.Protocol.FEND.asByte();
-                        if (KISS.Protocol.TFESC.equalsTo(b)) b = KISS.Protocol.FESC.asByte();
-                        inEscape = false;
-                    }
-                    frame.put(b);
-                }
-            }
+    private void resetFrame() {
+        inFrame = false;
+        inEscape = false;
+        scanOffset = 0;
+        commandByte = 0;
+    }
 
-            if (portConfig.getKISSFlags().contains("CHECKSUM")) {
-                int len = frame.position() - 1;
-                byte[] frameBytes = new byte[len];
-                frame.position(0);
-                frame.get(frameBytes);
-                int kissCrc = frame.get() & 0xFF;
-                for (int i = 0; i < len; i++) {
-                    crc ^= frameBytes[i];
-                }
-                crc &= 0xFF;
-                if (kissCrc == crc) {
-                    frameConsumer.accept(new KISSFrame(hdlcPort, kissCommand, frameBytes));
-                } else {
-                    // checksum is bad, drop it
-                }
-            } else {
-                int len = frame.position();
-                byte[] frameBytes = new byte[len];
-                frame.position(0);
-                frame.get(frameBytes);
-                frameConsumer.accept(new KISSFrame(hdlcPort, kissCommand, frameBytes));
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        if (unescaped != null) {
+            unescaped.release();
+            unescaped = null;
+        }
+        resetFrame();
+    }
+
+    /**
+     * Turn the command byte and un-escaped data of a complete frame into a {@link KISSFrame}. This takes
+     * ownership of the data buffer.
+     */
+    void decodeFrame(byte commandByte, ByteBuf frame, Consumer<KISSFrame> frameConsumer) {
+        int hdlcPort = (commandByte >> 4) & 0x0F;
+        KISS.Command kissCommand = KISS.Command.fromInt(commandByte & 0x0F);
+
+        if (portConfig.getKISSFlags().contains("CHECKSUM")) {
+            int len = frame.readableBytes() - 1;
+            if (len < 0) {
+                frame.release();
+                return;
+            }
+            int crc = (commandByte ^ KISSScanner.xor(frame, frame.readerIndex(), frame.readerIndex() + len)) & 0xFF;
+            int kissCrc = frame.getUnsignedByte(frame.readerIndex() + len);
+            if (kissCrc != crc) {
+                // checksum is bad, drop it
+                frame.release();
+                return;
             }
+            frame.writerIndex(frame.readerIndex() + len);
+        }
+
+        if (zeroCopy) {
+            frameConsumer.accept(new PooledKISSFrame(hdlcPort, kissCommand, frame));
         } else {
-            // Illegal indexes
-            throw new DecoderException();
+            try {
+                frameConsumer.accept(new KISSFrame(hdlcPort, kissCommand, ByteBufUtil.getBytes(frame)));
+            } finally {
+                frame.release();
+            }
         }
     }
 }
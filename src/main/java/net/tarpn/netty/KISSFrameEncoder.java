@@ -1,6 +1,7 @@
 package net.tarpn.netty;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import net.tarpn.config.PortConfig;
@@ -19,30 +20,49 @@ public class KISSFrameEncoder extends MessageToByteEncoder<KISSFrame> {
         this.portConfig = portConfig;
     }
 
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, KISSFrame msg, boolean preferDirect) throws Exception {
+        // FEND + command + data + checksum + FEND, escapes are rare enough to let the buffer grow
+        int size = dataLength(msg) + 4;
+        if (preferDirect) {
+            return ctx.alloc().ioBuffer(size);
+        } else {
+            return ctx.alloc().heapBuffer(size);
+        }
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, KISSFrame msg, ByteBuf out) throws Exception {
         LOG.trace("KISS write: " + msg);
         out.writeByte(KISS.Protocol.FEND.asByte());
-        int crc = 0;
         int commandByte = ((msg.getPort() << 4) & 0xF0) | (msg.getKissCommand().asByte() & 0x0F);
-        crc ^= commandByte;
         out.writeByte(commandByte);
-        for (int i = 0; i < msg.getData().length; i++) {
-            int b = msg.getData()[i];
-            crc ^= b;
-            if(KISS.Protocol.FEND.equalsTo(b)) {
-                out.writeByte(KISS.Protocol.FESC.asByte());
-                out.writeByte(KISS.Protocol.TFEND.asByte());
-            } else if(KISS.Protocol.FESC.equalsTo(b)) {
-                out.writeByte(KISS.Protocol.FESC.asByte());
-                out.writeByte(KISS.Protocol.TFESC.asByte());
-            } else {
-                out.writeByte((byte)b);
-            }
-        }
+        ByteBuf data = content(msg);
+        KISSScanner.escape(data, data.readerIndex(), data.writerIndex(), out);
         if (portConfig.getKISSFlags().contains("CHECKSUM")) {
+            int crc = commandByte ^ KISSScanner.xor(data, data.readerIndex(), data.writerIndex());
             out.writeByte(crc & 0xFF);
         }
         out.writeByte(KISS.Protocol.FEND.asByte());
     }
+
+    private static int dataLength(KISSFrame msg) {
+        if (msg instanceof PooledKISSFrame) {
+            return ((PooledKISSFrame) msg).content().readableBytes();
+        } else {
+            return msg.getData().length;
+        }
+    }
+
+    /**
+     * The frame data as a buffer. For frames built from an {@link net.tarpn.packet.impl.ax25.AX25Packet} this
+     * wraps the packet bytes directly, so the only copy is the escaping into the outbound buffer.
+     */
+    private static ByteBuf content(KISSFrame msg) {
+        if (msg instanceof PooledKISSFrame) {
+            return ((PooledKISSFrame) msg).content();
+        } else {
+            return Unpooled.wrappedBuffer(msg.getData());
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package net.tarpn.netty;
+
+import io.netty.buffer.ByteBuf;
+import net.tarpn.frame.impl.KISS;
+
+/**
+ * Finds KISS delimiter (FEND) and escape (FESC) bytes in a {@link ByteBuf} eight bytes at a time.
+ *
+ * Each word is XOR'd against a repeated pattern of the byte we're looking for, which turns matching bytes
+ * into zeros. The zero bytes are then found with a carry-free SWAR test, so the index of the first match
+ * is exact. Runs of bytes which need no special handling can then be copied in bulk.
+ */
+public final class KISSScanner {
+
+    private static final long FEND_PATTERN = pattern(KISS.Protocol.FEND.asByte());
+    private static final long FESC_PATTERN = pattern(KISS.Protocol.FESC.asByte());
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private KISSScanner() {
+
+    }
+
+    /**
+     * @return the index of the first FEND in [from, to), or -1
+     */
+    public static int indexOfFEND(ByteBuf buf, int from, int to) {
+        return indexOfAny(buf, from, to, FEND_PATTERN, FEND_PATTERN);
+    }
+
+    /**
+     * @return the index of the first FESC in [from, to), or -1
+     */
+    public static int indexOfFESC(ByteBuf buf, int from, int to) {
+        return indexOfAny(buf, from, to, FESC_PATTERN, FESC_PATTERN);
+    }
+
+    /**
+     * @return the index of the first FEND or FESC in [from, to), or -1
+     */
+    public static int indexOfSpecial(ByteBuf buf, int from, int to) {
+        return indexOfAny(buf, from, to, FEND_PATTERN, FESC_PATTERN);
+    }
+
+    /**
+     * Copy the bytes in [from, to) to the output, replacing any FEND or FESC with the two byte escape sequence.
+     */
+    public static void escape(ByteBuf src, int from, int to, ByteBuf out) {
+        int idx = from;
+        while (idx < to) {
+            int special = indexOfSpecial(src, idx, to);
+            if (special == -1) {
+                out.writeBytes(src, idx, to - idx);
+                return;
+            }
+            out.writeBytes(src, idx, special - idx);
+            out.writeByte(KISS.Protocol.FESC.asByte());
+            if (KISS.Protocol.FEND.equalsTo(src.getByte(special))) {
+                out.writeByte(KISS.Protocol.TFEND.asByte());
+            } else {
+                out.writeByte(KISS.Protocol.TFESC.asByte());
+            }
+            idx = special + 1;
+        }
+    }
+
+    /**
+     * Copy the bytes in [from, to) to the output, replacing any escape sequences with the original byte.
+     */
+    public static void unescape(ByteBuf src, int from, int to, ByteBuf out) {
+        int idx = from;
+        while (idx < to) {
+            int fesc = indexOfFESC(src, idx, to);
+            if (fesc == -1) {
+                out.writeBytes(src, idx, to - idx);
+                return;
+            }
+            out.writeBytes(src, idx, fesc - idx);
+            if (fesc + 1 < to) {
+                byte b = src.getByte(fesc + 1);
+                if (KISS.Protocol.TFEND.equalsTo(b)) b = KISS.Protocol.FEND.asByte();
+                if (KISS.Protocol.TFESC.equalsTo(b)) b = KISS.Protocol.FESC.asByte();
+                out.writeByte(b);
+            }
+            idx = fesc + 2;
+        }
+    }
+
+    /**
+     * @return the XOR of all the bytes in [from, to), as used by the KISS checksum
+     */
+    public static int xor(ByteBuf buf, int from, int to) {
+        long acc = 0;
+        int idx = from;
+        while (to - idx >= Long.BYTES) {
+            acc ^= buf.getLong(idx);
+            idx += Long.BYTES;
+        }
+        acc ^= acc >>> 32;
+        acc ^= acc >>> 16;
+        acc ^= acc >>> 8;
+        int crc = (int) acc;
+        while (idx < to) {
+            crc ^= buf.getByte(idx++);
+        }
+        return crc & 0xFF;
+    }
+
+    private static int indexOfAny(ByteBuf buf, int from, int to, long patternA, long patternB) {
+        int idx = from;
+        while (to - idx >= Long.BYTES) {
+            long word = buf.getLong(idx);
+            long matches = zeroBytes(word ^ patternA) | zeroBytes(word ^ patternB);
+            if (matches != 0) {
+                // getLong is big-endian, so the lowest index is the most significant byte
+                return idx + (Long.numberOfLeadingZeros(matches) >>> 3);
+            }
+            idx += Long.BYTES;
+        }
+        byte a = (byte) patternA;
+        byte b = (byte) patternB;
+        while (idx < to) {
+            byte value = buf.getByte(idx);
+            if (value == a || value == b) {
+                return idx;
+            }
+            idx++;
+        }
+        return -1;
+    }
+
+    /**
+     * Set the high bit of each byte in the word which is zero, and clear every other bit. Unlike the usual
+     * (x - 0x01..) &amp; ~x trick, this can't borrow across bytes so it has no false positives.
+     */
+    private static long zeroBytes(long word) {
+        long t = (word & LOW_BITS) + LOW_BITS;
+        return ~(t | word | LOW_BITS);
+    }
+
+    private static long pattern(byte b) {
+        return (b & 0xFFL) * 0x0101010101010101L;
+    }
+}
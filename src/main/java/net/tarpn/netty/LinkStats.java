@@ -0,0 +1,43 @@
+package net.tarpn.netty;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the AX.25 traffic on a port. These are updated by {@link AX25StateHandler} and read by
+ * anything that wants to know how well the channel is doing (e.g. adaptive KISS parameters).
+ */
+public class LinkStats {
+
+    private final AtomicLong iFramesSent = new AtomicLong();
+    private final AtomicLong t1Expiries = new AtomicLong();
+
+    public void iFrameSent() {
+        iFramesSent.incrementAndGet();
+    }
+
+    public void t1Expired() {
+        t1Expiries.incrementAndGet();
+    }
+
+    /**
+     * @return the number of I frames sent, including retransmissions
+     */
+    public long getIFramesSent() {
+        return iFramesSent.get();
+    }
+
+    /**
+     * @return the number of times T1 has expired on any link on this port
+     */
+    public long getT1Expiries() {
+        return t1Expiries.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LinkStats{" +
+                "iFramesSent=" + iFramesSent +
+                ", t1Expiries=" + t1Expiries +
+                '}';
+    }
+}
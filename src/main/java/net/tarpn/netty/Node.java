@@ -15,6 +15,7 @@ import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import net.tarpn.config.Configs;
+import net.tarpn.config.NetRomConfig;
 import net.tarpn.config.PortConfig;
 import net.tarpn.netty.app.Application;
 import net.tarpn.netty.app.ApplicationInboundHandlerAdaptor;
@@ -24,16 +25,25 @@ import net.tarpn.netty.ax25.AX25Address;
 import net.tarpn.netty.ax25.DataLinkMultiplexer;
 import net.tarpn.netty.ax25.Multiplexer;
 import net.tarpn.netty.i2c.I2CChannel;
+import net.tarpn.netty.kiss.KISSParameterController;
+import net.tarpn.netty.kiss.KISSPortChannel;
+import net.tarpn.netty.kiss.KISSPortMultiplexer;
+import net.tarpn.netty.kiss.KISSTransmitScheduler;
 import net.tarpn.netty.network.*;
 import net.tarpn.netty.serial.SerialChannel;
 import net.tarpn.netty.serial.SerialChannelOption;
 import net.tarpn.network.netrom.NetRomNodes;
+import net.tarpn.network.netrom.NetRomRoutingTable;
 import net.tarpn.packet.impl.ax25.AX25Call;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class Node {
 
@@ -41,43 +51,61 @@ public class Node {
 
     private final OioEventLoopGroup oioGroup = new OioEventLoopGroup();
     private final EventLoopGroup nioGroup = new NioEventLoopGroup();
+    private final EventLoopGroup kissPortGroup = new DefaultEventLoopGroup();
 
     static class NodeChannelInitializer<T extends Channel> extends ChannelInitializer<T> {
 
         private final Configs configs;
         private final PortConfig portConfig;
         private final Multiplexer multiplexer;
+        private final NetRomRoutingTable routingTable;
+        private final boolean withKISSCodec;
 
-        NodeChannelInitializer(Configs configs, PortConfig portConfig, Multiplexer multiplexer) {
+        NodeChannelInitializer(Configs configs, PortConfig portConfig, Multiplexer multiplexer,
+                               NetRomRoutingTable routingTable) {
+            this(configs, portConfig, multiplexer, routingTable, true);
+        }
+
+        NodeChannelInitializer(Configs configs, PortConfig portConfig, Multiplexer multiplexer,
+                               NetRomRoutingTable routingTable, boolean withKISSCodec) {
             this.configs = configs;
             this.portConfig = portConfig;
             this.multiplexer = multiplexer;
+            this.routingTable = routingTable;
+            this.withKISSCodec = withKISSCodec;
         }
 
         @Override
         protected void initChannel(T ch) {
+            if (withKISSCodec) {
+                ch.pipeline()
+                        .addLast(new KISSFrameEncoder(portConfig))
+                        .addLast(new KISSFrameDecoder(portConfig));
+            }
             ch.pipeline()
-                    .addLast(new KISSFrameEncoder(portConfig))
-                    .addLast(new KISSFrameDecoder(portConfig))
-                    .addLast(new AX25PacketEncoder())
+                    .addLast(new KISSTransmitScheduler(portConfig))
+                    .addLast(new KISSParameterController(portConfig))
+                    .addLast(new AX25PacketEncoder(portConfig))
                     .addLast(new AX25PacketDecoder())
-                    .addLast(new NetRomNodesHandler(portConfig))
+                    .addLast(new NetRomNodesHandler(portConfig, configs.getNetRomConfig(), routingTable))
                     .addLast(new AX25PacketFilter(portConfig))
                     .addLast(new AX25StateHandler(portConfig))
+                    .addLast(new DataLinkSegmenter(portConfig))
                     .addLast(new DataLinkHandler(portConfig, multiplexer))
                     .addLast(new NetRomDecoder())
-                    .addLast(new NetRomStateHandler(configs, multiplexer))
+                    .addLast(new NetRomStateHandler(configs, multiplexer, routingTable))
                     .addLast(new NetworkHandler());
             ch.attr(Attributes.PortNumber).set(portConfig.getPortNumber());
             ch.attr(Attributes.NodeCall).set(portConfig.getNodeCall());
         }
     }
 
-    private ChannelFuture createI2CPort(Configs configs, PortConfig portConfig, Multiplexer multiplexer) {
+    private ChannelFuture createI2CPort(Configs configs, PortConfig portConfig, Multiplexer multiplexer,
+                                        NetRomRoutingTable routingTable) {
         Bootstrap b = new Bootstrap();
         b.group(oioGroup)
                 .channel(I2CChannel.class)
-                .handler(new NodeChannelInitializer<I2CChannel>(configs, portConfig, multiplexer));
+                .handler(new NodeChannelInitializer<I2CChannel>(configs, portConfig, multiplexer, routingTable));
 
         ChannelFuture channelFuture = b.connect(new I2CChannel.I2CDeviceAddress(
                 portConfig.getI2CBus(), portConfig.getI2CDeviceAddress()));
@@ -101,14 +129,15 @@ public class Node {
 
     }
 
-    private ChannelFuture createSerialPort(Configs configs, PortConfig portConfig, Multiplexer multiplexer) {
+    private ChannelFuture createSerialPort(Configs configs, PortConfig portConfig, Multiplexer multiplexer,
+                                           NetRomRoutingTable routingTable) {
         Bootstrap b = new Bootstrap();
         b.group(oioGroup)
                 .channel(SerialChannel.class)
                 .option(SerialChannelOption.WAIT_TIME_MS, 3000)
                 .option(SerialChannelOption.BAUD_RATE, portConfig.getSerialSpeed())
                 .option(SerialChannelOption.READ_TIMEOUT_MS, 100)
-                .handler(new NodeChannelInitializer<SerialChannel>(configs, portConfig, multiplexer));
+                .handler(new NodeChannelInitializer<SerialChannel>(configs, portConfig, multiplexer, routingTable));
 
         ChannelFuture channelFuture = b.connect(new SerialChannel.SerialDeviceAddress(portConfig.getSerialDevice()));
         channelFuture.addListener(new ChannelFutureListener() {
@@ -132,6 +161,77 @@ public class Node {
         return channelFuture;
     }
 
+    /**
+     * Open a serial device which carries several ports (radios) distinguished by their KISS HDLC port. The KISS
+     * codec is shared, and each port gets its own {@link KISSPortChannel} with the rest of the node pipeline.
+     */
+    private ChannelFuture createMultiDropSerialPort(Configs configs, List<PortConfig> portConfigs, Multiplexer multiplexer,
+                                                    NetRomRoutingTable routingTable) {
+        Map<Integer, PortConfig> portsByHDLC = new HashMap<>();
+        for (PortConfig portConfig : portConfigs) {
+            if (portConfig.getKISSPort() < 0 || portConfig.getKISSPort() >= KISSPortMultiplexer.MAX_KISS_PORTS) {
+                throw new IllegalArgumentException("Port " + portConfig.getPortNumber() + " has kiss.port " +
+                        portConfig.getKISSPort() + ", it must be between 0 and " +
+                        (KISSPortMultiplexer.MAX_KISS_PORTS - 1));
+            }
+            PortConfig existing = portsByHDLC.put(portConfig.getKISSPort(), portConfig);
+            if (existing != null) {
+                throw new IllegalArgumentException("Ports " + existing.getPortNumber() + " and " +
+                        portConfig.getPortNumber() + " have the same kiss.port on " + portConfig.getSerialDevice());
+            }
+        }
+
+        // Device settings are taken from the first port
+        PortConfig deviceConfig = portConfigs.get(0);
+        Bootstrap b = new Bootstrap();
+        b.group(oioGroup)
+                .channel(SerialChannel.class)
+                .option(SerialChannelOption.WAIT_TIME_MS, 3000)
+                .option(SerialChannelOption.BAUD_RATE, deviceConfig.getSerialSpeed())
+                .option(SerialChannelOption.READ_TIMEOUT_MS, 100)
+                .handler(new ChannelInitializer<SerialChannel>() {
+                    @Override
+                    protected void initChannel(SerialChannel ch) {
+                        ch.pipeline()
+                                .addLast(new KISSFrameEncoder(deviceConfig))
+                                .addLast(new KISSFrameDecoder(deviceConfig))
+                                .addLast(new KISSPortMultiplexer(portsByHDLC, kissPortGroup, portConfig ->
+                                        new NodeChannelInitializer<KISSPortChannel>(configs, portConfig, multiplexer, routingTable, false)));
+                    }
+                });
+
+        ChannelFuture channelFuture = b.connect(new SerialChannel.SerialDeviceAddress(deviceConfig.getSerialDevice()));
+        channelFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (future.isSuccess()) {
+                    for (PortConfig portConfig : portConfigs) {
+                        LOG.info("Initialized serial port " + portConfig.getPortNumber() + " on KISS port " + portConfig.getKISSPort());
+                        multiplexer.listen(new AX25Address(portConfig.getPortNumber(), portConfig.getNodeCall()), () ->
+                                new SysopApplicationHandler(configs, multiplexer)
+                        );
+                    }
+                } else {
+                    future.channel().close().sync();
+                    Thread.sleep(1000);
+                    LOG.info("Retrying failed device " + deviceConfig.getSerialDevice());
+                    b.connect(new SerialChannel.SerialDeviceAddress(deviceConfig.getSerialDevice())).addListener(this);
+                }
+            }
+        });
+        return channelFuture;
+    }
+
+    /**
+     * Age the routes in the shared routing table once per NODES interval, as each port's broadcast goes out
+     */
+    private void scheduleRoutePruning(NetRomConfig netRomConfig, NetRomRoutingTable routingTable) {
+        int interval = netRomConfig.getNodesInterval();
+        if (interval > 0) {
+            nioGroup.scheduleAtFixedRate(routingTable::pruneRoutes, 30, interval, TimeUnit.SECONDS);
+        }
+    }
+
     private ChannelFuture createTelnetPort(Configs allConfigs, Multiplexer multiplexer) {
         // Telnet server
         ServerBootstrap b = new ServerBootstrap();
@@ -165,14 +265,21 @@ public class Node {
             //DataLinkMultiplexer multiplexer = new DataLinkMultiplexer();
             Multiplexer multiplexer = new DataLinkMultiplexer();
 
+            // One routing table for the whole node, every port learns into it and broadcasts from it
+            NetRomRoutingTable routingTable = new NetRomRoutingTable(configs.getNetRomConfig(),
+                    configs.getPortConfigs()::get, neighbor -> LOG.info("Got new neighbor: " + neighbor));
+            node.scheduleRoutePruning(configs.getNetRomConfig(), routingTable);
+
             //SysopApplicationHandler sysop = new SysopApplicationHandler(configs, multiplexer);
+            Map<String, List<PortConfig>> serialDevices = new LinkedHashMap<>();
             configs.getPortConfigs().forEach((portNum, portConfig) -> {
                 switch (portConfig.getPortType().toLowerCase()) {
                     case "serial":
-                        futures.add(node.createSerialPort(configs, portConfig, multiplexer));
+                        // Several ports may share a multi-drop KISS device
+                        serialDevices.computeIfAbsent(portConfig.getSerialDevice(), device -> new ArrayList<>()).add(portConfig);
                         break;
                     case "i2c":
-                        futures.add(node.createI2CPort(configs, portConfig, multiplexer));
+                        futures.add(node.createI2CPort(configs, portConfig, multiplexer, routingTable));
                         break;
                     default:
                         LOG.warn("Ignoring unknown port type " + portConfig.getPortType());
@@ -180,6 +287,13 @@ public class Node {
 
                 }
             });
+            serialDevices.forEach((device, portConfigs) -> {
+                if (portConfigs.size() == 1) {
+                    futures.add(node.createSerialPort(configs, portConfigs.get(0), multiplexer, routingTable));
+                } else {
+                    futures.add(node.createMultiDropSerialPort(configs, portConfigs, multiplexer, routingTable));
+                }
+            });
             futures.add(node.createTelnetPort(configs, multiplexer));
         }
 
@@ -0,0 +1,93 @@
+package net.tarpn.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.util.IllegalReferenceCountException;
+import net.tarpn.packet.impl.ax25.AX25PacketView;
+
+/**
+ * An {@link AX25PacketView} directly over the data of a {@link PooledKISSFrame}, so looking at the addresses,
+ * frame type or PID of a frame never copies it. The bytes are only copied out if the frame is fully decoded.
+ *
+ * Like any other {@link ByteBufHolder}, this must be released by whoever consumes it last. Once released,
+ * the view must not be used again since the buffer's memory may belong to another frame by then.
+ */
+public class PooledAX25PacketView extends AX25PacketView implements ByteBufHolder {
+
+    private final ByteBuf content;
+
+    /**
+     * @param content the frame's bytes, this view takes over the caller's reference
+     */
+    public PooledAX25PacketView(ByteBuf content) {
+        super(content.nioBuffer());
+        this.content = content;
+    }
+
+    @Override
+    public ByteBuf content() {
+        if (content.refCnt() == 0) {
+            throw new IllegalReferenceCountException(0);
+        }
+        return content;
+    }
+
+    @Override
+    public PooledAX25PacketView copy() {
+        return replace(content.copy());
+    }
+
+    @Override
+    public PooledAX25PacketView duplicate() {
+        return replace(content.duplicate());
+    }
+
+    @Override
+    public PooledAX25PacketView retainedDuplicate() {
+        return replace(content.retainedDuplicate());
+    }
+
+    @Override
+    public PooledAX25PacketView replace(ByteBuf content) {
+        return new PooledAX25PacketView(content);
+    }
+
+    @Override
+    public int refCnt() {
+        return content.refCnt();
+    }
+
+    @Override
+    public PooledAX25PacketView retain() {
+        content.retain();
+        return this;
+    }
+
+    @Override
+    public PooledAX25PacketView retain(int increment) {
+        content.retain(increment);
+        return this;
+    }
+
+    @Override
+    public PooledAX25PacketView touch() {
+        content.touch();
+        return this;
+    }
+
+    @Override
+    public PooledAX25PacketView touch(Object hint) {
+        content.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return content.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return content.release(decrement);
+    }
+}
@@ -0,0 +1,113 @@
+package net.tarpn.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.internal.ObjectUtil;
+import net.tarpn.frame.impl.KISS;
+import net.tarpn.frame.impl.KISSFrame;
+
+/**
+ * A {@link KISSFrame} whose data is held in a reference counted {@link ByteBuf} rather than a byte array.
+ *
+ * The buffer is usually a retained slice of the decoder's cumulation buffer, or a pooled buffer if the
+ * frame needed to be un-escaped. Handlers that only need to look at the data should use {@link #content()},
+ * {@link #getData()} will make a copy of the bytes the first time it is called.
+ *
+ * Like any other {@link ByteBufHolder}, this must be released by whoever consumes it last.
+ */
+public class PooledKISSFrame extends KISSFrame implements ByteBufHolder {
+
+    private final ByteBuf content;
+    private byte[] data;
+
+    public PooledKISSFrame(int port, KISS.Command kissCommand, ByteBuf content) {
+        super(port, kissCommand, null);
+        this.content = ObjectUtil.checkNotNull(content, "content");
+    }
+
+    @Override
+    public byte[] getData() {
+        if (data == null) {
+            data = ByteBufUtil.getBytes(content);
+        }
+        return data;
+    }
+
+    @Override
+    public ByteBuf content() {
+        if (content.refCnt() == 0) {
+            throw new IllegalReferenceCountException(0);
+        }
+        return content;
+    }
+
+    @Override
+    public PooledKISSFrame copy() {
+        return replace(content.copy());
+    }
+
+    @Override
+    public PooledKISSFrame duplicate() {
+        return replace(content.duplicate());
+    }
+
+    @Override
+    public PooledKISSFrame retainedDuplicate() {
+        return replace(content.retainedDuplicate());
+    }
+
+    @Override
+    public PooledKISSFrame replace(ByteBuf content) {
+        return new PooledKISSFrame(getPort(), getKissCommand(), content);
+    }
+
+    @Override
+    public int refCnt() {
+        return content.refCnt();
+    }
+
+    @Override
+    public PooledKISSFrame retain() {
+        content.retain();
+        return this;
+    }
+
+    @Override
+    public PooledKISSFrame retain(int increment) {
+        content.retain(increment);
+        return this;
+    }
+
+    @Override
+    public PooledKISSFrame touch() {
+        content.touch();
+        return this;
+    }
+
+    @Override
+    public PooledKISSFrame touch(Object hint) {
+        content.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return content.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return content.release(decrement);
+    }
+
+    @Override
+    public String toString() {
+        return "PooledKISSFrame{" +
+                "port='" + getPort() + '\'' +
+                ", command=" + getKissCommand() +
+                ", content=" + content +
+                '}';
+    }
+}
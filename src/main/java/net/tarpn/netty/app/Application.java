@@ -13,6 +13,13 @@ public interface Application {
 
     default void onError(Context context, Throwable t) throws Exception { };
 
+    /**
+     * The channel has become writable or unwritable, see {@link Context#isWritable()}
+     * @param context
+     * @throws Exception
+     */
+    default void onWritabilityChanged(Context context) throws Exception { };
+
     /**
      * New data is available to be read by this application. The main logic goes here
      * @param context
@@ -39,6 +39,12 @@ public class ApplicationInboundHandlerAdaptor extends SimpleChannelInboundHandle
         ctx.flush();
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        application.onWritabilityChanged(adaptContext(ctx));
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         application.onError(adaptContext(ctx), cause);
@@ -69,6 +75,16 @@ public class ApplicationInboundHandlerAdaptor extends SimpleChannelInboundHandle
                 ctx.flush();
             }
 
+            @Override
+            public boolean isWritable() {
+                return ctx.channel().isWritable();
+            }
+
+            @Override
+            public void setAutoRead(boolean autoRead) {
+                ctx.channel().config().setAutoRead(autoRead);
+            }
+
             @Override
             public void close() {
                 ctx.close();
@@ -0,0 +1,163 @@
+package net.tarpn.netty.app;
+
+import io.netty.util.concurrent.EventExecutor;
+import net.tarpn.util.Timer;
+import net.tarpn.util.TimerWheel;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A {@link Context} which collects writes and sends them on in as few frames as it can.
+ *
+ * Writes are held until {@link #flush()}, or until a whole frame's worth has built up. If the application
+ * doesn't flush, whatever it wrote goes out after a short delay (like Nagle's algorithm). The delay starts
+ * with the first unflushed write and isn't pushed back by later ones, so a steady trickle of writes can't
+ * hold data back for long.
+ *
+ * Frames are written on the executor of the given {@link TimerWheel}, normally the channel's event loop, in
+ * the order they were cut. A frame cut on another thread is queued, and later frames queue up behind it
+ * rather than being written inline ahead of it.
+ *
+ * While the channel isn't {@link #isWritable() writable}, whole frames are held here rather than pushed down
+ * to a link that's already backed up. They go out once {@link #writabilityChanged()} is called.
+ */
+public abstract class BufferedContext implements Context {
+
+    public static final long DEFAULT_FLUSH_DELAY_MS = 100;
+
+    private final int frameSize;
+    private final EventExecutor executor;
+    private final Timer flushTimer;
+    private byte[] buffer;
+    private int length = 0;
+
+    /**
+     * Frames (or a close) handed to the executor but not yet written
+     */
+    private int queued = 0;
+
+    /**
+     * Frames held back while the channel isn't writable
+     */
+    private final ArrayDeque<byte[]> held = new ArrayDeque<>();
+    private boolean closing = false;
+
+    protected BufferedContext(int frameSize, TimerWheel timerWheel) {
+        this(frameSize, DEFAULT_FLUSH_DELAY_MS, timerWheel);
+    }
+
+    protected BufferedContext(int frameSize, long flushDelayMs, TimerWheel timerWheel) {
+        this.frameSize = frameSize;
+        this.buffer = new byte[frameSize];
+        this.executor = timerWheel.executor();
+        this.flushTimer = Timer.create(timerWheel, flushDelayMs, this::flush);
+    }
+
+    /**
+     * Send one frame of data to the channel, at most frameSize bytes
+     */
+    protected abstract void writeFrame(byte[] frame);
+
+    /**
+     * Close the underlying channel, after any buffered data has been sent
+     */
+    protected abstract void closeChannel();
+
+    @Override
+    public synchronized void write(byte[] msg) {
+        int offset = 0;
+        while (offset < msg.length) {
+            int count = Math.min(frameSize - length, msg.length - offset);
+            System.arraycopy(msg, offset, buffer, length, count);
+            length += count;
+            offset += count;
+            if (length == frameSize) {
+                send(take());
+            }
+        }
+        if (length == 0) {
+            flushTimer.cancel();
+        } else if (!flushTimer.isRunning()) {
+            flushTimer.start();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        flushTimer.cancel();
+        if (length > 0) {
+            send(take());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        if (held.isEmpty()) {
+            inOrder(this::closeChannel);
+        } else {
+            // Close once the held frames have gone out
+            closing = true;
+        }
+    }
+
+    /**
+     * Send any frames held back while the channel wasn't writable, for as long as it stays writable
+     */
+    public synchronized void writabilityChanged() {
+        while (!held.isEmpty() && isWritable()) {
+            byte[] frame = held.poll();
+            inOrder(() -> writeFrame(frame));
+        }
+        if (held.isEmpty() && closing) {
+            closing = false;
+            inOrder(this::closeChannel);
+        }
+    }
+
+    /**
+     * Drop anything not yet sent, for when the channel has gone away
+     */
+    public synchronized void discard() {
+        flushTimer.cancel();
+        length = 0;
+        held.clear();
+        closing = false;
+    }
+
+    private void send(byte[] frame) {
+        if (!held.isEmpty() || !isWritable()) {
+            held.add(frame);
+        } else {
+            inOrder(() -> writeFrame(frame));
+        }
+    }
+
+    /**
+     * Run an action on the executor after anything we've already queued there. Called with our lock held, so
+     * the order actions are queued in is the order frames were cut.
+     */
+    private void inOrder(Runnable action) {
+        if (queued == 0 && executor.inEventLoop()) {
+            action.run();
+        } else {
+            queued++;
+            executor.execute(() -> {
+                synchronized (this) {
+                    queued--;
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private byte[] take() {
+        byte[] frame = length == frameSize ? buffer : Arrays.copyOf(buffer, length);
+        if (frame == buffer) {
+            buffer = new byte[frameSize];
+        }
+        length = 0;
+        return frame;
+    }
+}
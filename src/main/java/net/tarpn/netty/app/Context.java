@@ -25,6 +25,22 @@ public interface Context {
      */
     void flush();
 
+    /**
+     * Check if the channel can take more data right now. If not, the application should hold off writing
+     * until {@link Application#onWritabilityChanged(Context)}
+     */
+    default boolean isWritable() {
+        return true;
+    }
+
+    /**
+     * Stop or resume reading from the channel, so a peer that's sending faster than we can pass data on
+     * gets pushed back on
+     */
+    default void setAutoRead(boolean autoRead) {
+
+    }
+
     /**
      * Request to close the channel
      */
@@ -148,6 +148,7 @@ public class SysopApplicationHandler implements Application {
                     case DL_DISCONNECT:
                         context.write("Disconnected from " + primitive.getRemoteCall());
                         context.flush();
+                        context.setAutoRead(true);
                         SysopApplicationHandler.this.channel.close();
                         SysopApplicationHandler.this.channel = null;
                         SysopApplicationHandler.this.remoteCall = null;
@@ -157,6 +158,13 @@ public class SysopApplicationHandler implements Application {
                         context.write(primitive.getLinkInfo().getInfoAsASCII());
                         context.flush();
                         break;
+                    case DL_FLOW_OFF:
+                        // The link's send queue is full, stop reading from the sysop until it drains
+                        context.setAutoRead(false);
+                        break;
+                    case DL_FLOW_ON:
+                        context.setAutoRead(true);
+                        break;
                     case DL_ERROR:
                         context.write("Had an error: " + primitive.getError().getMessage());
                         context.flush();
@@ -10,5 +10,11 @@ public interface DataLinkChannel {
 
     void write(DataLinkPrimitive dl);
 
+    /**
+     * False while the link's send queue is full. A DL_FLOW_ON is sent to the data link consumer when
+     * it's writable again.
+     */
+    boolean isWritable();
+
     void close();
 }
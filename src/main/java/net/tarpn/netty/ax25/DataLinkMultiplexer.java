@@ -2,9 +2,10 @@ package net.tarpn.netty.ax25;
 
 import net.tarpn.datalink.DataLinkPrimitive;
 import net.tarpn.netty.app.Application;
-import net.tarpn.netty.app.Context;
+import net.tarpn.netty.app.BufferedContext;
 import net.tarpn.packet.impl.ax25.AX25Call;
 import net.tarpn.packet.impl.ax25.AX25Packet;
+import net.tarpn.util.TimerWheel;
 import net.tarpn.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +13,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -19,16 +22,23 @@ public class DataLinkMultiplexer implements Multiplexer {
 
     private static final Logger LOG = LoggerFactory.getLogger(DataLinkMultiplexer.class);
 
+    /**
+     * Application writes are buffered up to the largest AX.25 info field, the {@link net.tarpn.netty.DataLinkSegmenter}
+     * cuts them down to the port's PACLEN
+     */
+    private static final int MAX_FRAME_SIZE = 256;
+
     Map<AX25Address, MultiplexedPort> dataPorts = new HashMap<>();
 
     // This channel is opened in the SerialChannel pipeline
     @Override
-    public PortChannel bind(AX25Address localAddress, Consumer<DataLinkPrimitive> dataLinkConsumer) throws IOException {
+    public PortChannel bind(AX25Address localAddress, TimerWheel timerWheel,
+                            Consumer<DataLinkPrimitive> dataLinkConsumer) throws IOException {
         if (dataPorts.containsKey(localAddress)) {
             throw new PortInUseException(localAddress);
         } else {
             LOG.info("Binding to " + localAddress);
-            MultiplexedPort mp = new MultiplexedPort(localAddress);
+            MultiplexedPort mp = new MultiplexedPort(localAddress, timerWheel);
             mp.attachPort(dataLinkConsumer);
             dataPorts.put(localAddress, mp);
             // Return a PortChannel that can be used to write to the port and to close it
@@ -90,6 +100,11 @@ public class DataLinkMultiplexer implements Multiplexer {
                         port.writeToPort(dl);
                     }
 
+                    @Override
+                    public boolean isWritable() {
+                        return port.isWritable(remoteAddress.call);
+                    }
+
                     @Override
                     public void close() {
                         port.closeDataLink(remoteAddress.call);
@@ -132,40 +147,45 @@ public class DataLinkMultiplexer implements Multiplexer {
             if (dataLink == null) {
                 // first time seeing this remote call on this port, set up new consumer
                 Application application = onAccept.get();
-                Consumer<DataLinkPrimitive> newDataLink = dl1 -> {
-                    // Adapt to the Context interface, this is the callback passed to the application
-                    Context appContext = new Context() {
-                        @Override
-                        public void write(byte[] msg) {
-                            // TODO maybe don't do this here?
-                            String stringMsg = port.localAddress + "} " + Util.ascii(msg) + "\r";
-                            port.writeToPort(DataLinkPrimitive.newDataRequest(
-                                    dl.getRemoteCall(),
-                                    dl.getLocalCall(),
-                                    AX25Packet.Protocol.NO_LAYER3,
-                                    Util.ascii(stringMsg)
-                            ));
-                        }
+                // Adapt to the Context interface, this is the callback passed to the application
+                BufferedContext appContext = new BufferedContext(MAX_FRAME_SIZE, port.timerWheel) {
+                    @Override
+                    public void write(byte[] msg) {
+                        // TODO maybe don't do this here?
+                        String stringMsg = port.localAddress + "} " + Util.ascii(msg) + "\r";
+                        super.write(Util.ascii(stringMsg));
+                    }
 
-                        @Override
-                        public void flush() {
-                            // no op
-                        }
+                    @Override
+                    protected void writeFrame(byte[] frame) {
+                        port.writeToPort(DataLinkPrimitive.newDataRequest(
+                                dl.getRemoteCall(),
+                                dl.getLocalCall(),
+                                AX25Packet.Protocol.NO_LAYER3,
+                                frame
+                        ));
+                    }
 
-                        @Override
-                        public void close() {
-                            port.writeToPort(DataLinkPrimitive.newDisconnectRequest(
-                                    dl.getRemoteCall(),
-                                    dl.getLocalCall()
-                            ));
-                        }
+                    @Override
+                    public boolean isWritable() {
+                        return port.isWritable(dl.getRemoteCall());
+                    }
 
-                        @Override
-                        public String remoteAddress() {
-                            return dl1.getRemoteCall().toString();
-                        }
-                    };
+                    @Override
+                    protected void closeChannel() {
+                        port.writeToPort(DataLinkPrimitive.newDisconnectRequest(
+                                dl.getRemoteCall(),
+                                dl.getLocalCall()
+                        ));
+                    }
+
+                    @Override
+                    public String remoteAddress() {
+                        return dl.getRemoteCall().toString();
+                    }
+                };
 
+                Consumer<DataLinkPrimitive> newDataLink = dl1 -> {
                     // Handle the incoming DL event
                     try {
                         switch (dl1.getType()) {
@@ -175,12 +195,20 @@ public class DataLinkMultiplexer implements Multiplexer {
                             case DL_DISCONNECT:
                                 // Here we get a disconnect indication or confirmation
                                 application.onDisconnect(appContext);
+                                appContext.discard();
                                 port.closeDataLink(dl1.getRemoteCall());
                                 break;
                             case DL_DATA:
                             case DL_UNIT_DATA:
                                 application.read(appContext, dl1.getLinkInfo().getInfo());
                                 break;
+                            case DL_FLOW_OFF:
+                                application.onWritabilityChanged(appContext);
+                                break;
+                            case DL_FLOW_ON:
+                                appContext.writabilityChanged();
+                                application.onWritabilityChanged(appContext);
+                                break;
                             case DL_ERROR:
                                 throw new DataLinkException(dl1.getError());
                         }
@@ -212,13 +240,18 @@ public class DataLinkMultiplexer implements Multiplexer {
      */
     private class MultiplexedPort {
         final AX25Address localAddress;
+        final TimerWheel timerWheel;
         Consumer<DataLinkPrimitive> portConsumer;
 
         // Map of remote address to DL consumer
         Map<AX25Call, Consumer<DataLinkPrimitive>> dataLinks = new HashMap<>();
 
-        public MultiplexedPort(AX25Address localAddress) {
+        // Remote addresses whose link has told us to stop sending (DL_FLOW_OFF)
+        Set<AX25Call> flowOff = ConcurrentHashMap.newKeySet();
+
+        public MultiplexedPort(AX25Address localAddress, TimerWheel timerWheel) {
             this.localAddress = localAddress;
+            this.timerWheel = timerWheel;
         }
 
         public void attachPort(Consumer<DataLinkPrimitive> portConsumer) {
@@ -233,6 +266,7 @@ public class DataLinkMultiplexer implements Multiplexer {
 
         public boolean closeDataLink(AX25Call remoteCall) {
             LOG.info("Closing DataLink to " + remoteCall + " on port " + localAddress);
+            flowOff.remove(remoteCall);
             return this.dataLinks.remove(remoteCall) != null;
         }
 
@@ -242,7 +276,16 @@ public class DataLinkMultiplexer implements Multiplexer {
             }
         }
 
+        public boolean isWritable(AX25Call remoteCall) {
+            return !flowOff.contains(remoteCall);
+        }
+
         public void writeToDataLink(DataLinkPrimitive msg) {
+            if (msg.getType().equals(DataLinkPrimitive.Type.DL_FLOW_OFF)) {
+                flowOff.add(msg.getRemoteCall());
+            } else if (msg.getType().equals(DataLinkPrimitive.Type.DL_FLOW_ON)) {
+                flowOff.remove(msg.getRemoteCall());
+            }
             Consumer<DataLinkPrimitive> dataLink = dataLinks.get(msg.getRemoteCall());
             if (dataLink == null) {
                 // If no specific handler has been register for this remote call, use the catch-all
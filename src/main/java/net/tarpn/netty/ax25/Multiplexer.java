@@ -4,13 +4,19 @@ package net.tarpn.netty.ax25;
 import net.tarpn.datalink.DataLinkPrimitive;
 import net.tarpn.netty.app.Application;
 
+import net.tarpn.util.TimerWheel;
+
 import java.io.IOException;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public interface Multiplexer {
+    /**
+     * @param timerWheel timers for this port, and the thread its data links' applications write from
+     */
     PortChannel bind(
             AX25Address localAddress,
+            TimerWheel timerWheel,
             Consumer<DataLinkPrimitive> dataLinkConsumer) throws IOException;
 
     DataLinkChannel connect(
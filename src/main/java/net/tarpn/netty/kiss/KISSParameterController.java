@@ -0,0 +1,184 @@
+package net.tarpn.netty.kiss;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.ScheduledFuture;
+import net.tarpn.config.PortConfig;
+import net.tarpn.frame.impl.KISS;
+import net.tarpn.frame.impl.KISSFrame;
+import net.tarpn.netty.Attributes;
+import net.tarpn.netty.LinkStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Send the KISS parameters (TXDELAY, PERSIST, SLOTTIME, TXTAIL, FULLDUP) from the port config to the TNC when
+ * the port comes up, and again every "kiss.params.interval" seconds in case the TNC was power cycled. Times
+ * are in 10ms units as defined by KISS.
+ *
+ * If "kiss.adaptive" is enabled (and the port is not full duplex), PERSIST and SLOTTIME are tuned based on
+ * how often T1 expires compared to how many I frames we send. A high retry rate suggests we're colliding
+ * with other stations, so we back off by lowering PERSIST and lengthening SLOTTIME. Once the channel is
+ * clean again, we work back towards the configured values.
+ */
+public class KISSParameterController extends ChannelInboundHandlerAdapter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KISSParameterController.class);
+
+    /**
+     * Don't judge the channel on fewer I frames than this
+     */
+    static final int MIN_SAMPLE = 5;
+    static final double HIGH_RETRY_RATE = 0.20;
+    static final double LOW_RETRY_RATE = 0.05;
+    static final int PERSIST_MIN = 32;
+    static final int PERSIST_STEP = 16;
+    static final int SLOT_TIME_MAX_FACTOR = 4;
+
+    private final int hdlcPort;
+    private final int txDelay;
+    private final int txTail;
+    private final boolean fullDuplex;
+    private final int configuredPersist;
+    private final int configuredSlotTime;
+    private final int paramsInterval;
+    private final boolean adaptive;
+    private final int adaptiveInterval;
+
+    private int persist;
+    private int slotTime;
+
+    private long lastIFramesSent = 0;
+    private long lastT1Expiries = 0;
+
+    private ScheduledFuture<?> paramsTask = null;
+    private ScheduledFuture<?> adaptiveTask = null;
+
+    public KISSParameterController(PortConfig portConfig) {
+        this.hdlcPort = portConfig.getKISSPort();
+        this.txDelay = clamp(portConfig.getInt("kiss.tx.delay", 50));
+        this.txTail = clamp(portConfig.getInt("kiss.tx.tail", 0));
+        this.fullDuplex = portConfig.getBoolean("kiss.duplex", false);
+        this.configuredPersist = clamp(portConfig.getInt("kiss.persist", 63));
+        this.configuredSlotTime = clamp(portConfig.getInt("kiss.slot.time", 10));
+        this.paramsInterval = portConfig.getInt("kiss.params.interval", 600);
+        this.adaptive = portConfig.getBoolean("kiss.adaptive", false) && !fullDuplex;
+        this.adaptiveInterval = portConfig.getInt("kiss.adaptive.interval", 60);
+        this.persist = configuredPersist;
+        this.slotTime = configuredSlotTime;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        sendParameters(ctx);
+        if (paramsInterval > 0) {
+            paramsTask = ctx.executor().scheduleAtFixedRate(
+                    () -> sendParameters(ctx), paramsInterval, paramsInterval, TimeUnit.SECONDS);
+        }
+        if (adaptive && adaptiveInterval > 0) {
+            LinkStats stats = ctx.channel().attr(Attributes.Stats).get();
+            if (stats != null) {
+                lastIFramesSent = stats.getIFramesSent();
+                lastT1Expiries = stats.getT1Expiries();
+            }
+            adaptiveTask = ctx.executor().scheduleAtFixedRate(
+                    () -> adapt(ctx), adaptiveInterval, adaptiveInterval, TimeUnit.SECONDS);
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelTasks();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cancelTasks();
+    }
+
+    private void cancelTasks() {
+        if (paramsTask != null) {
+            paramsTask.cancel(false);
+            paramsTask = null;
+        }
+        if (adaptiveTask != null) {
+            adaptiveTask.cancel(false);
+            adaptiveTask = null;
+        }
+    }
+
+    private void sendParameters(ChannelHandlerContext ctx) {
+        LOG.debug("Sending KISS parameters to port " + hdlcPort + ": TXDELAY=" + txDelay + " PERSIST=" + persist +
+                " SLOTTIME=" + slotTime + " TXTAIL=" + txTail + " FULLDUP=" + fullDuplex);
+        sendParameter(ctx, KISS.Command.TxDelay, txDelay);
+        sendParameter(ctx, KISS.Command.P, persist);
+        sendParameter(ctx, KISS.Command.SlotTime, slotTime);
+        sendParameter(ctx, KISS.Command.TxTail, txTail);
+        sendParameter(ctx, KISS.Command.FullDuplex, fullDuplex ? 1 : 0);
+        ctx.flush();
+    }
+
+    private void sendParameter(ChannelHandlerContext ctx, KISS.Command command, int value) {
+        ctx.write(new KISSFrame(hdlcPort, command, new byte[]{(byte) value}));
+    }
+
+    private void adapt(ChannelHandlerContext ctx) {
+        LinkStats stats = ctx.channel().attr(Attributes.Stats).get();
+        if (stats == null) {
+            return;
+        }
+        long iFramesSent = stats.getIFramesSent();
+        long t1Expiries = stats.getT1Expiries();
+        long sentDelta = iFramesSent - lastIFramesSent;
+        if (sentDelta < MIN_SAMPLE) {
+            // Keep accumulating until there's enough traffic to say anything
+            return;
+        }
+        long expiredDelta = t1Expiries - lastT1Expiries;
+        lastIFramesSent = iFramesSent;
+        lastT1Expiries = t1Expiries;
+        if (adjust(sentDelta, expiredDelta)) {
+            LOG.info("Adjusted KISS parameters on port " + hdlcPort + " after " + expiredDelta + " T1 expiries in " +
+                    sentDelta + " I frames: PERSIST=" + persist + " SLOTTIME=" + slotTime);
+            sendParameter(ctx, KISS.Command.P, persist);
+            sendParameter(ctx, KISS.Command.SlotTime, slotTime);
+            ctx.flush();
+        }
+    }
+
+    /**
+     * Move PERSIST and SLOTTIME based on the retry rate over the last interval.
+     *
+     * @return true if either value changed
+     */
+    boolean adjust(long iFramesSent, long t1Expiries) {
+        int oldPersist = persist;
+        int oldSlotTime = slotTime;
+        double retryRate = (double) t1Expiries / Math.max(iFramesSent, 1);
+        if (retryRate > HIGH_RETRY_RATE) {
+            persist = Math.max(Math.min(PERSIST_MIN, configuredPersist), persist * 3 / 4);
+            slotTime = Math.min(Math.max(configuredSlotTime, 1) * SLOT_TIME_MAX_FACTOR, slotTime + 1);
+            slotTime = Math.min(slotTime, 255);
+        } else if (retryRate < LOW_RETRY_RATE) {
+            persist = Math.min(configuredPersist, persist + PERSIST_STEP);
+            slotTime = Math.max(configuredSlotTime, slotTime - 1);
+        }
+        return persist != oldPersist || slotTime != oldSlotTime;
+    }
+
+    int getPersist() {
+        return persist;
+    }
+
+    int getSlotTime() {
+        return slotTime;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
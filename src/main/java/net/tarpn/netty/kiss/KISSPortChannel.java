@@ -0,0 +1,196 @@
+package net.tarpn.netty.kiss;
+
+import io.netty.channel.*;
+import io.netty.util.ReferenceCountUtil;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A logical channel for one HDLC port of a multi-drop KISS TNC. These are created by {@link KISSPortMultiplexer}
+ * as children of the channel which owns the actual serial (or other) device.
+ *
+ * Incoming frames are pushed into this channel's pipeline by the multiplexer. Anything written to this channel
+ * is passed along to the parent channel, where the KISS encoder lives. A write's promise completes when the
+ * parent's write does, so failures on the device reach whoever wrote to the port.
+ *
+ * Since the parent is usually an OIO channel which owns its event loop, these channels must be registered
+ * with a separate {@link DefaultEventLoop}.
+ */
+public class KISSPortChannel extends AbstractChannel {
+
+    public static class KISSPortAddress extends SocketAddress {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SocketAddress device;
+        private final int hdlcPort;
+
+        public KISSPortAddress(SocketAddress device, int hdlcPort) {
+            this.device = device;
+            this.hdlcPort = hdlcPort;
+        }
+
+        /**
+         * @return The address of the parent channel's device
+         */
+        public SocketAddress device() {
+            return device;
+        }
+
+        /**
+         * @return The KISS HDLC port number (0-15)
+         */
+        public int hdlcPort() {
+            return hdlcPort;
+        }
+
+        @Override
+        public String toString() {
+            return device + "#" + hdlcPort;
+        }
+    }
+
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+
+    private final ChannelConfig config;
+    private final KISSPortAddress localAddress;
+
+    private volatile boolean open = true;
+
+    /**
+     * Messages handed to the parent whose writes haven't completed. These stay at the front of the outbound
+     * buffer until they do, so their promises get the parent's result. Only used on our event loop.
+     */
+    private int inFlight = 0;
+
+    public KISSPortChannel(Channel parent, int hdlcPort) {
+        super(parent);
+        this.config = new DefaultChannelConfig(this);
+        this.localAddress = new KISSPortAddress(parent.remoteAddress(), hdlcPort);
+    }
+
+    public int getHDLCPort() {
+        return localAddress.hdlcPort();
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return open;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new KISSPortUnsafe();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof DefaultEventLoop;
+    }
+
+    @Override
+    public KISSPortAddress localAddress() {
+        return (KISSPortAddress) super.localAddress();
+    }
+
+    @Override
+    protected KISSPortAddress localAddress0() {
+        return localAddress;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return parent().remoteAddress();
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        // Our address comes from the parent and the HDLC port, there's nothing to bind
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        open = false;
+        // Anything still in flight is failed with the rest of the outbound buffer
+        inFlight = 0;
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        // Frames are pushed to us by the multiplexer, nothing to do here
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        Channel parent = parent();
+        int toSkip = inFlight;
+        int written = 0;
+        for (Object msg : flushedMessages(in)) {
+            if (toSkip > 0) {
+                // Already with the parent from an earlier flush
+                toSkip--;
+                continue;
+            }
+            // The outbound buffer releases the message when it's removed, so hang onto it for the parent
+            ReferenceCountUtil.retain(msg);
+            inFlight++;
+            written++;
+            parent.write(msg).addListener(future -> eventLoop().execute(() -> writeComplete(in, future.cause())));
+        }
+        if (written > 0) {
+            parent.flush();
+        }
+    }
+
+    private static List<Object> flushedMessages(ChannelOutboundBuffer in) throws Exception {
+        List<Object> messages = new ArrayList<>(in.size());
+        in.forEachFlushedMessage(messages::add);
+        return messages;
+    }
+
+    /**
+     * The parent finished writing our oldest in flight message, complete its promise. The parent completes
+     * writes in order, so this is always the message at the front of the outbound buffer.
+     */
+    private void writeComplete(ChannelOutboundBuffer in, Throwable cause) {
+        if (inFlight == 0) {
+            // We were closed in the mean time, and the promise already failed
+            return;
+        }
+        inFlight--;
+        if (cause == null) {
+            in.remove();
+        } else {
+            in.remove(cause);
+        }
+    }
+
+    private final class KISSPortUnsafe extends AbstractUnsafe {
+        @Override
+        public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            promise.setFailure(new UnsupportedOperationException("connect"));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.tarpn.netty.kiss;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.ReferenceCountUtil;
+import net.tarpn.config.PortConfig;
+import net.tarpn.frame.impl.KISSFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Fan out the frames of a multi-drop KISS device (one serial line carrying several radios) to a
+ * {@link KISSPortChannel} per HDLC port. This goes after the KISS codec in the device's pipeline.
+ *
+ * Each child channel gets its own pipeline (AX.25 state, data link, etc) created from its own port config.
+ * Frames for an HDLC port which isn't configured are dropped.
+ */
+public class KISSPortMultiplexer extends ChannelInboundHandlerAdapter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KISSPortMultiplexer.class);
+
+    /**
+     * The port goes in the high nibble of the KISS command byte, so a TNC has at most 16
+     */
+    public static final int MAX_KISS_PORTS = 16;
+
+    private final Map<Integer, PortConfig> portConfigs;
+    private final EventLoopGroup childGroup;
+    private final Function<PortConfig, ChannelHandler> childInitializer;
+    private final KISSPortChannel[] children = new KISSPortChannel[MAX_KISS_PORTS];
+
+    /**
+     * @param portConfigs port configs keyed by HDLC port number
+     * @param childGroup event loop group for the child channels
+     * @param childInitializer create the handler for each child channel's pipeline
+     */
+    public KISSPortMultiplexer(
+            Map<Integer, PortConfig> portConfigs,
+            EventLoopGroup childGroup,
+            Function<PortConfig, ChannelHandler> childInitializer) {
+        this.portConfigs = portConfigs;
+        this.childGroup = childGroup;
+        this.childInitializer = childInitializer;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        portConfigs.forEach((hdlcPort, portConfig) -> {
+            KISSPortChannel child = new KISSPortChannel(ctx.channel(), hdlcPort);
+            child.pipeline().addLast(childInitializer.apply(portConfig));
+            children[hdlcPort] = child;
+            childGroup.register(child).addListener(future -> {
+                if (future.isSuccess()) {
+                    LOG.info("Opened KISS port " + child.localAddress() + " for port " + portConfig.getPortNumber());
+                } else {
+                    LOG.error("Could not open KISS port " + hdlcPort + " for port " + portConfig.getPortNumber(), future.cause());
+                }
+            });
+        });
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] != null) {
+                children[i].close();
+                children[i] = null;
+            }
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof KISSFrame) {
+            KISSFrame frame = (KISSFrame) msg;
+            KISSPortChannel child = children[frame.getPort() & 0x0F];
+            if (child != null && child.isRegistered() && child.isActive()) {
+                // This hands off to the child's event loop
+                child.pipeline().fireChannelRead(msg);
+            } else {
+                LOG.warn("Dropping frame for unknown KISS port " + frame.getPort() + " on " + ctx.channel().remoteAddress());
+                ReferenceCountUtil.release(msg);
+            }
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+}
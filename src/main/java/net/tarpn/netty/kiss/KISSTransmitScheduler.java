@@ -0,0 +1,270 @@
+package net.tarpn.netty.kiss;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import net.tarpn.config.PortConfig;
+import net.tarpn.frame.impl.KISS;
+import net.tarpn.frame.impl.KISSFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue outgoing {@link KISSFrame}s and release them to the TNC at the rate it can send them.
+ *
+ * We keep track of when the frames already handed to the TNC will have been sent, based on "kiss.tx.baud"
+ * (which defaults to "serial.speed"). Once more than "kiss.tx.backlog" milliseconds worth of frames are in
+ * flight, or the device channel is over its write watermark, frames wait here instead of overrunning the
+ * TNC's buffer.
+ *
+ * While a frame waits, it may become redundant. A queued RR or RNR (without P/F) is dropped if a newer RR or
+ * RNR for the same link is queued, and a queued RR is dropped if an I frame for the same link is queued since
+ * it carries the same N(R).
+ */
+public class KISSTransmitScheduler extends ChannelDuplexHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KISSTransmitScheduler.class);
+
+    private static final int DEFAULT_BACKLOG_MS = 500;
+
+    /**
+     * A KISS frame costs two FENDs and a command byte on top of its data. Each byte is 10 bits on the wire.
+     */
+    private static final int FRAME_OVERHEAD = 3;
+    private static final int BITS_PER_BYTE = 10;
+
+    private static final class PendingFrame {
+        private final KISSFrame frame;
+        private final ChannelPromise promise;
+
+        private PendingFrame(KISSFrame frame, ChannelPromise promise) {
+            this.frame = frame;
+            this.promise = promise;
+        }
+    }
+
+    private final ArrayDeque<PendingFrame> queue = new ArrayDeque<>();
+    private final long nanosPerByte;
+    private final long backlogNanos;
+
+    /**
+     * When (in {@link System#nanoTime()}) the frames we've already written should be sent
+     */
+    private long busyUntil = 0;
+
+    private ScheduledFuture<?> drainTask = null;
+
+    public KISSTransmitScheduler(PortConfig portConfig) {
+        int baud = portConfig.getInt("kiss.tx.baud", portConfig.getInt("serial.speed", 9600));
+        this.nanosPerByte = TimeUnit.SECONDS.toNanos(BITS_PER_BYTE) / Math.max(baud, 1);
+        this.backlogNanos = TimeUnit.MILLISECONDS.toNanos(portConfig.getInt("kiss.tx.backlog", DEFAULT_BACKLOG_MS));
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof KISSFrame) {
+            KISSFrame frame = (KISSFrame) msg;
+            coalesce(frame);
+            queue.add(new PendingFrame(frame, promise));
+        } else {
+            ctx.write(msg, promise);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        drain(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            drain(ctx);
+            ctx.flush();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelDrain();
+        PendingFrame pending;
+        while ((pending = queue.poll()) != null) {
+            ReferenceCountUtil.release(pending.frame);
+            pending.promise.tryFailure(new ClosedChannelException());
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cancelDrain();
+        // Let anything still queued go out without pacing
+        PendingFrame pending;
+        while ((pending = queue.poll()) != null) {
+            ctx.write(pending.frame, pending.promise);
+        }
+        ctx.flush();
+    }
+
+    /**
+     * Write as many queued frames as the TNC can take right now. If there are frames left, try again
+     * once the backlog has drained a bit.
+     */
+    private void drain(ChannelHandlerContext ctx) {
+        boolean wrote = false;
+        while (!queue.isEmpty()) {
+            if (!deviceWritable(ctx.channel())) {
+                // Wait for channelWritabilityChanged, or poll if the watermark belongs to our parent
+                if (ctx.channel().parent() != null) {
+                    scheduleDrain(ctx, TimeUnit.MILLISECONDS.toNanos(10));
+                }
+                break;
+            }
+            long now = System.nanoTime();
+            long backlog = busyUntil - now;
+            if (backlog > backlogNanos) {
+                scheduleDrain(ctx, backlog - backlogNanos);
+                break;
+            }
+            PendingFrame pending = queue.poll();
+            busyUntil = Math.max(busyUntil, now) + airtime(pending.frame);
+            ctx.write(pending.frame, pending.promise);
+            wrote = true;
+        }
+        if (wrote) {
+            ctx.flush();
+        }
+    }
+
+    private void scheduleDrain(ChannelHandlerContext ctx, long delayNanos) {
+        if (drainTask != null && !drainTask.isDone()) {
+            return;
+        }
+        drainTask = ctx.executor().schedule(() -> {
+            drainTask = null;
+            drain(ctx);
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelDrain() {
+        if (drainTask != null) {
+            drainTask.cancel(false);
+            drainTask = null;
+        }
+    }
+
+    private long airtime(KISSFrame frame) {
+        return (frame.getData().length + FRAME_OVERHEAD) * nanosPerByte;
+    }
+
+    /**
+     * Multi-drop ports write through to a parent channel, which is the one with the real watermark
+     */
+    private static boolean deviceWritable(Channel channel) {
+        Channel parent = channel.parent();
+        return channel.isWritable() && (parent == null || parent.isWritable());
+    }
+
+    /**
+     * Drop any queued supervisory frames which the new frame makes redundant
+     */
+    private void coalesce(KISSFrame newer) {
+        Iterator<PendingFrame> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            PendingFrame pending = iterator.next();
+            if (supersedes(newer, pending.frame)) {
+                LOG.debug("Dropping redundant supervisory frame " + pending.frame);
+                iterator.remove();
+                ReferenceCountUtil.release(pending.frame);
+                pending.promise.trySuccess();
+            }
+        }
+    }
+
+    /**
+     * Check if an older, unsent frame is made redundant by a newer frame. Only data frames carrying an RR or
+     * RNR without the P/F bit can be superseded. A newer RR or RNR on the same link replaces either, and a
+     * newer I frame on the same link replaces an RR.
+     */
+    static boolean supersedes(KISSFrame newer, KISSFrame older) {
+        if (!newer.getKissCommand().equals(KISS.Command.Data) || !older.getKissCommand().equals(KISS.Command.Data)) {
+            return false;
+        }
+        if (newer.getPort() != older.getPort()) {
+            return false;
+        }
+        byte[] olderData = older.getData();
+        byte[] newerData = newer.getData();
+        int olderControlIdx = controlIndex(olderData);
+        int newerControlIdx = controlIndex(newerData);
+        if (olderControlIdx == -1 || newerControlIdx == -1) {
+            return false;
+        }
+
+        int olderControl = olderData[olderControlIdx] & 0xFF;
+        // A modulo 128 S frame has a second control byte, with P/F in its low bit
+        boolean olderPollFinal = olderData.length == olderControlIdx + 2
+                ? (olderData[olderControlIdx + 1] & 0x01) != 0
+                : (olderControl & 0x10) != 0;
+        if ((olderControl & 0x03) != 0x01 || olderPollFinal) {
+            // Not a supervisory frame, or it has P/F which needs to get through
+            return false;
+        }
+        boolean olderRR = (olderControl & 0x0F) == 0x01;
+        boolean olderRNR = (olderControl & 0x0F) == 0x05;
+        if (!olderRR && !olderRNR) {
+            // Leave REJ alone
+            return false;
+        }
+
+        if (!sameLink(newerData, olderData)) {
+            return false;
+        }
+
+        int newerControl = newerData[newerControlIdx] & 0xFF;
+        if ((newerControl & 0x01) == 0) {
+            // I frame, N(R) is piggybacked but it doesn't say anything about being busy
+            return olderRR;
+        }
+        int newerType = newerControl & 0x0F;
+        return newerType == 0x01 || newerType == 0x05;
+    }
+
+    /**
+     * Find the control byte after the address fields, or -1 if the frame is too short
+     */
+    private static int controlIndex(byte[] data) {
+        int idx = 0;
+        while (idx + 7 <= data.length) {
+            boolean last = (data[idx + 6] & 0x01) != 0;
+            idx += 7;
+            if (last) {
+                return idx < data.length && idx >= 14 ? idx : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same destination and source call and SSID, ignoring the C/R and reserved bits
+     */
+    private static boolean sameLink(byte[] a, byte[] b) {
+        for (int i = 0; i < 14; i++) {
+            int mask = (i % 7 == 6) ? 0x1E : 0xFF;
+            if ((a[i] & mask) != (b[i] & mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
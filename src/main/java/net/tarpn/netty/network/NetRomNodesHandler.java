@@ -2,66 +2,154 @@ package net.tarpn.netty.network;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.ScheduledFuture;
 import io.netty.util.internal.TypeParameterMatcher;
+import net.tarpn.config.NetRomConfig;
 import net.tarpn.config.PortConfig;
-import net.tarpn.netty.AX25PacketFilter;
 import net.tarpn.netty.Attributes;
 import net.tarpn.network.netrom.NetRomNodes;
+import net.tarpn.network.netrom.NetRomRoutingTable;
 import net.tarpn.packet.impl.ax25.AX25Call;
 import net.tarpn.packet.impl.ax25.AX25Packet;
+import net.tarpn.packet.impl.ax25.AX25PacketView;
 import net.tarpn.packet.impl.ax25.UIFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * Hears NODES broadcasts from our neighbors and passes them up as {@link NodesEvent}s, and broadcasts our own
+ * routing table every "netrom.nodes.interval" seconds.
+ *
+ * A big routing table doesn't fit in one UI frame, so it goes out as several (see
+ * {@link NetRomNodes#writeFrames(NetRomNodes)}). These are spaced "netrom.nodes.pace" milliseconds apart so
+ * that a broadcast doesn't hold up other traffic on the port. If the next broadcast comes around before the
+ * last one has finished, the rest of the old one is dropped in favor of the newer table.
+ *
+ * Between broadcasts, the routing table tells us when best routes change (see
+ * {@link NetRomRoutingTable#addUpdateListener(Consumer)}), and we send just those entries.
+ */
 public class NetRomNodesHandler extends ChannelInboundHandlerAdapter {
 
-    private static final Logger LOG = LoggerFactory.getLogger(AX25PacketFilter.class);
+    private static final Logger LOG = LoggerFactory.getLogger(NetRomNodesHandler.class);
 
     private static final AX25Call NODES_CALL = AX25Call.create("NODES", 0);
 
+    private static final int DEFAULT_PACE_MS = 2000;
+    private static final int INITIAL_DELAY_S = 15;
+
     private final PortConfig portConfig;
+    private final NetRomConfig netRomConfig;
+    private final NetRomRoutingTable routingTable;
+    private final ArrayDeque<byte[]> pendingFrames = new ArrayDeque<>();
+
+    private ScheduledFuture<?> broadcastFuture;
+    private Consumer<NetRomNodes> updateListener;
 
-    public NetRomNodesHandler(PortConfig portConfig) {
+    public NetRomNodesHandler(PortConfig portConfig, NetRomConfig netRomConfig, NetRomRoutingTable routingTable) {
         this.portConfig = portConfig;
+        this.netRomConfig = netRomConfig;
+        this.routingTable = routingTable;
     }
 
-
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        ctx.executor().scheduleAtFixedRate(() -> {
-            LOG.info("Sending our NODES");
-            List<NetRomNodes.NodeDestination> destinations = new ArrayList<>();
-            destinations.add(new NetRomNodes.NodeDestination(
-                    AX25Call.create("KM4NKU-9"),
-                    "ZNKU09",
-                    AX25Call.create("KM4NKU-2"),
-                    200
-            ));
-            NetRomNodes ourNodes = new NetRomNodes("DAVID2", destinations);
-            UIFrame outgoing = UIFrame.create(NODES_CALL, AX25Call.create("KM4NKU-2"), AX25Packet.Protocol.NETROM,
-                    NetRomNodes.write(ourNodes));
-            ctx.writeAndFlush(outgoing);
-        }, 3, 60, TimeUnit.SECONDS);
+        int interval = netRomConfig.getNodesInterval();
+        if (interval > 0) {
+            broadcastFuture = ctx.executor().scheduleAtFixedRate(() -> broadcast(ctx),
+                    INITIAL_DELAY_S, interval, TimeUnit.SECONDS);
+        }
+        updateListener = changes -> ctx.executor().execute(() -> sendUpdate(ctx, changes));
+        routingTable.addUpdateListener(updateListener);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (broadcastFuture != null) {
+            broadcastFuture.cancel(false);
+            broadcastFuture = null;
+        }
+        if (updateListener != null) {
+            routingTable.removeUpdateListener(updateListener);
+            updateListener = null;
+        }
+        pendingFrames.clear();
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * Queue up our whole routing table and start sending it
+     */
+    private void broadcast(ChannelHandlerContext ctx) {
+        List<byte[]> frames = NetRomNodes.writeFrames(routingTable.getNodes());
+        LOG.info("Sending our NODES on port " + portConfig.getPortNumber() + " in " + frames.size() + " frames");
+        boolean idle = pendingFrames.isEmpty();
+        if (!idle) {
+            LOG.warn("Previous NODES broadcast on port " + portConfig.getPortNumber() + " hadn't finished, " +
+                    pendingFrames.size() + " frames dropped");
+            pendingFrames.clear();
+        }
+        pendingFrames.addAll(frames);
+        if (idle) {
+            sendNextFrame(ctx);
+        }
+    }
+
+    /**
+     * Queue up a triggered update behind anything we're already sending
+     */
+    private void sendUpdate(ChannelHandlerContext ctx, NetRomNodes changes) {
+        List<byte[]> frames = NetRomNodes.writeFrames(changes);
+        LOG.info("Sending NODES update on port " + portConfig.getPortNumber() + " for " +
+                changes.getDestinationList().size() + " destinations");
+        boolean idle = pendingFrames.isEmpty();
+        pendingFrames.addAll(frames);
+        if (idle) {
+            sendNextFrame(ctx);
+        }
+    }
+
+    /**
+     * Send one queued frame, and schedule the next one. Always runs on the channel's event loop.
+     */
+    private void sendNextFrame(ChannelHandlerContext ctx) {
+        byte[] nodesInfo = pendingFrames.poll();
+        if (nodesInfo == null || !ctx.channel().isActive()) {
+            return;
+        }
+        UIFrame outgoing = UIFrame.create(NODES_CALL, portConfig.getNodeCall(), AX25Packet.Protocol.NETROM, nodesInfo);
+        ctx.writeAndFlush(outgoing);
+        if (!pendingFrames.isEmpty()) {
+            int pace = netRomConfig.getInt("netrom.nodes.pace", DEFAULT_PACE_MS);
+            ctx.executor().schedule(() -> sendNextFrame(ctx), pace, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        TypeParameterMatcher matcher = TypeParameterMatcher.get(UIFrame.class);
+        TypeParameterMatcher matcher = TypeParameterMatcher.get(AX25PacketView.class);
         if (matcher.match(msg)) {
-            UIFrame packet = (UIFrame) msg;
-            if (packet.getProtocol().equals(AX25Packet.Protocol.NETROM) && packet.getDestCall().callMatches(NODES_CALL)) {
-                NetRomNodes nodes = NetRomNodes.read(packet.getInfo());
-                LOG.info("Got NET/ROM Nodes: " + nodes);
+            AX25PacketView packet = (AX25PacketView) msg;
+            if (packet.getDestCall().callMatches(NODES_CALL) &&
+                    packet.getFrameType().equals(AX25Packet.FrameType.UI) &&
+                    packet.getProtocolByte() == AX25Packet.Protocol.NETROM.asByte()) {
+                // The routing table parses this as it goes, only decode the whole thing for logging
+                byte[] nodesInfo = packet.getInfo();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Got NET/ROM Nodes: " + NetRomNodes.read(nodesInfo));
+                } else {
+                    LOG.info("Got NET/ROM Nodes from " + packet.getSourceCall());
+                }
                 ctx.pipeline().fireUserEventTriggered(
                     new NodesEvent(
                         ctx.channel().attr(Attributes.PortNumber).get(),
                         packet.getSourceCall(),
-                        nodes));
+                        nodesInfo));
             }
         }
 
@@ -72,12 +160,12 @@ public class NetRomNodesHandler extends ChannelInboundHandlerAdapter {
     public static class NodesEvent {
         final int heardOnPort;
         final AX25Call heardFrom;
-        final NetRomNodes nodes;
+        final byte[] nodesInfo;
 
-        public NodesEvent(int heardOnPort, AX25Call heardFrom, NetRomNodes nodes) {
+        public NodesEvent(int heardOnPort, AX25Call heardFrom, byte[] nodesInfo) {
             this.heardOnPort = heardOnPort;
             this.heardFrom = heardFrom;
-            this.nodes = nodes;
+            this.nodesInfo = nodesInfo;
         }
     }
 }
@@ -12,7 +12,6 @@ import net.tarpn.netty.ax25.Multiplexer;
 import net.tarpn.network.netrom.*;
 import net.tarpn.network.netrom.handlers.*;
 import net.tarpn.network.netrom.packet.NetRomPacket;
-import net.tarpn.packet.impl.ax25.AX25Call;
 import net.tarpn.packet.impl.ax25.AX25Packet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,10 +32,10 @@ public class NetRomStateHandler extends ChannelDuplexHandler {
     private final NetRomRoutingTable routingTable;
     private final Multiplexer multiplexer;
 
-    public NetRomStateHandler(Configs allConfigs, Multiplexer multiplexer) {
+    public NetRomStateHandler(Configs allConfigs, Multiplexer multiplexer, NetRomRoutingTable routingTable) {
         this.netRomConfig = allConfigs.getNetRomConfig();
         this.multiplexer = multiplexer;
-        this.routingTable = new NetRomRoutingTable(netRomConfig, allConfigs.getPortConfigs()::get, this::onNewNeighbor);
+        this.routingTable = routingTable;
         this.stateHandlers.put(NetRomCircuit.State.AWAITING_CONNECTION, new AwaitingConnectionStateHandler());
         this.stateHandlers.put(NetRomCircuit.State.CONNECTED, new ConnectedStateHandler());
         this.stateHandlers.put(NetRomCircuit.State.AWAITING_RELEASE, new AwaitingReleaseStateHandler());
@@ -79,7 +78,7 @@ public class NetRomStateHandler extends ChannelDuplexHandler {
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt instanceof NetRomNodesHandler.NodesEvent) {
             NetRomNodesHandler.NodesEvent event = (NetRomNodesHandler.NodesEvent) evt;
-            routingTable.updateNodes(event.heardFrom, event.heardOnPort, event.nodes);
+            routingTable.updateNodes(event.heardFrom, event.heardOnPort, event.nodesInfo);
         }
     }
 
@@ -102,21 +101,16 @@ public class NetRomStateHandler extends ChannelDuplexHandler {
         }
     }
 
-    private void onNewNeighbor(NetRomRoutingTable.Neighbor neighbor) {
-        LOG.info("Got new neighbor: " + neighbor);
-    }
-
     private boolean route(NetRomPacket netRomPacket) {
         DataLinkPrimitive dataLinkPrimitive = DataLinkPrimitive.newDataRequest(
                 netRomPacket.getDestNode(),
                 netRomPacket.getOriginNode(),
                 AX25Packet.Protocol.NETROM,
                 netRomPacket.getPayload());
-        List<AX25Call> potentialRoutes = routingTable.routePacket(dataLinkPrimitive.getRemoteCall());
+        List<NetRomRoutingTable.Neighbor> potentialRoutes = routingTable.routeToNeighbors(dataLinkPrimitive.getRemoteCall());
         boolean routed = false;
 
-        for(AX25Call route : potentialRoutes) {
-            NetRomRoutingTable.Neighbor neighbor = routingTable.getNeighbors().get(route);
+        for(NetRomRoutingTable.Neighbor neighbor : potentialRoutes) {
             int routePort = neighbor.getPort();
             AX25Address localAddress = new AX25Address(routePort, netRomConfig.getNodeCall());
             DataLinkPrimitive readdressed = dataLinkPrimitive.readdress(neighbor.getNodeCall());
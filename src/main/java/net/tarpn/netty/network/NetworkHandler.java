@@ -8,6 +8,7 @@ import net.tarpn.netty.app.Context;
 import net.tarpn.netty.app.SysopApplicationHandler;
 import net.tarpn.network.netrom.NetworkPrimitive;
 import net.tarpn.packet.impl.ax25.AX25Call;
+import net.tarpn.util.TimerWheel;
 import net.tarpn.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +23,7 @@ public class NetworkHandler extends ChannelInboundHandlerAdapter {
 
     private final Map<Integer, Consumer<NetworkPrimitive>> openCircuits = new HashMap<>();
     private final NetworkLinkMultiplexer networkMultiplexer;
+    private TimerWheel timerWheel;
 
     public NetworkHandler() {
         networkMultiplexer = new NetworkLinkMultiplexer();
@@ -38,6 +40,11 @@ public class NetworkHandler extends ChannelInboundHandlerAdapter {
 
     }
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        timerWheel = new TimerWheel(ctx.executor());
+    }
+
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
         super.channelRegistered(ctx);
@@ -50,7 +57,7 @@ public class NetworkHandler extends ChannelInboundHandlerAdapter {
             NetworkPrimitive np = (NetworkPrimitive) msg;
             // Check if the packet is for us, if so, send to the proper circuit
             if (networkMultiplexer.forUs(((NetworkPrimitive) msg).getLocalCall())) {
-                networkMultiplexer.demux(np, ctx::writeAndFlush);
+                networkMultiplexer.demux(np, timerWheel, ctx::writeAndFlush);
             } else {
                 // forwarding should have already happened, so... reject it?
                 LOG.warn("Unhandled L4 message: " + msg);
@@ -1,9 +1,10 @@
 package net.tarpn.netty.network;
 
 import net.tarpn.netty.app.Application;
-import net.tarpn.netty.app.Context;
+import net.tarpn.netty.app.BufferedContext;
 import net.tarpn.network.netrom.NetworkPrimitive;
 import net.tarpn.packet.impl.ax25.AX25Call;
+import net.tarpn.util.TimerWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,6 +18,11 @@ public class NetworkLinkMultiplexer  {
 
     private static final Logger LOG = LoggerFactory.getLogger(NetworkLinkMultiplexer.class);
 
+    /**
+     * The most user data a NET/ROM info packet carries, 256 bytes less the 20 byte L3/L4 header
+     */
+    private static final int MAX_INFO_SIZE = 236;
+
     Map<AX25Call, Supplier<Application>> listeners = new HashMap<>();
 
     Map<Integer, NetworkLink> networkLinks = new HashMap<>();
@@ -55,45 +61,42 @@ public class NetworkLinkMultiplexer  {
         return listeners.containsKey(destCall);
     }
 
-    public void demux(NetworkPrimitive np, Consumer<NetworkPrimitive> outbound) throws IOException {
+    /**
+     * @param timerWheel for a new circuit's timers, on the same thread outbound writes from
+     */
+    public void demux(NetworkPrimitive np, TimerWheel timerWheel, Consumer<NetworkPrimitive> outbound) throws IOException {
         NetworkLink networkLink = networkLinks.get(np.getCircuitId() & 0xff);
         if (networkLink == null) {
             LOG.info("Creating new circuit " + (np.getCircuitId() & 0xff) + " for " + np.getRemoteCall());
             networkLink = new NetworkLink(np.getLocalCall(), np.getRemoteCall());
             networkLink.attachOutbound(outbound);
             Application application = listeners.get(np.getLocalCall()).get();
-            Consumer<NetworkPrimitive> newConsumer = networkPrimitive -> {
-                Context appContext = new Context() {
-                    @Override
-                    public void write(byte[] msg) {
-                        outbound.accept(NetworkPrimitive.newData(
-                                networkPrimitive.getRemoteCall(),
-                                networkPrimitive.getLocalCall(),
-                                msg,
-                                networkPrimitive.getCircuitId()
-                        ));
-                    }
-
-                    @Override
-                    public void flush() {
-                        // no op
-                    }
-
-                    @Override
-                    public void close() {
-                        outbound.accept(NetworkPrimitive.newDisconnect(
-                                networkPrimitive.getRemoteCall(),
-                                networkPrimitive.getLocalCall(),
-                                networkPrimitive.getCircuitId()
-                        ));
-                    }
+            BufferedContext appContext = new BufferedContext(MAX_INFO_SIZE, timerWheel) {
+                @Override
+                protected void writeFrame(byte[] frame) {
+                    outbound.accept(NetworkPrimitive.newData(
+                            np.getRemoteCall(),
+                            np.getLocalCall(),
+                            frame,
+                            np.getCircuitId()
+                    ));
+                }
 
-                    @Override
-                    public String remoteAddress() {
-                        return np.getRemoteCall().toString();
-                    }
-                };
+                @Override
+                protected void closeChannel() {
+                    outbound.accept(NetworkPrimitive.newDisconnect(
+                            np.getRemoteCall(),
+                            np.getLocalCall(),
+                            np.getCircuitId()
+                    ));
+                }
 
+                @Override
+                public String remoteAddress() {
+                    return np.getRemoteCall().toString();
+                }
+            };
+            Consumer<NetworkPrimitive> newConsumer = networkPrimitive -> {
                 // Handle the incoming DL event
                 try {
                     switch (networkPrimitive.getType()) {
@@ -103,6 +106,7 @@ public class NetworkLinkMultiplexer  {
                         case NL_DISCONNECT:
                             // Here we get a disconnect indication or confirmation
                             application.onDisconnect(appContext);
+                            appContext.discard();
                             networkLinks.remove(networkPrimitive.getCircuitId() & 0xff);
                             break;
                         case NL_INFO:
@@ -108,14 +108,13 @@ public class NetworkManager {
    * Accept a level 2 primitive, find the appropriate port to route it to, and send it
    */
   private boolean route(DataLinkPrimitive level2Primitive) {
-    List<AX25Call> potentialRoutes = router.routePacket(level2Primitive.getRemoteCall());
+    List<Neighbor> potentialRoutes = router.routeToNeighbors(level2Primitive.getRemoteCall());
     boolean routed = false;
 
-    for(AX25Call route : potentialRoutes) {
-      Neighbor neighbor = router.getNeighbors().get(route);
+    for(Neighbor neighbor : potentialRoutes) {
       int routePort = neighbor.getPort();
       DataLinkManager portManager = dataPorts.get(routePort);
-      AX25State state = portManager.getAx25StateHandler().getState(route);
+      AX25State state = portManager.getAx25StateHandler().getState(neighbor.getNodeCall());
       if(state.getState().equals(State.DISCONNECTED)) {
         portManager.acceptDataLinkPrimitive(DataLinkPrimitive.newConnectRequest(neighbor.getNodeCall(), netromConfig.getNodeCall()));
       }
@@ -163,11 +162,13 @@ public class NetworkManager {
     // Send automatic NODES packets
     executorService.scheduleAtFixedRate(() -> {
       NetRomNodes nodes = router.getNodes();
-      byte[] nodesData = NetRomNodes.write(nodes);
+      List<byte[]> nodesFrames = NetRomNodes.writeFrames(nodes);
       for(DataLinkManager portManager : dataPorts.values()) {
         LOG.info("Sending automatic NODES message on " + portManager.getDataPort() + ": " + nodes);
-        portManager.getAx25StateHandler().getEventQueue().add(
-            AX25StateEvent.createUnitDataEvent(AX25Call.create("NODES", 0), Protocol.NETROM, nodesData));
+        for(byte[] nodesData : nodesFrames) {
+          portManager.getAx25StateHandler().getEventQueue().add(
+              AX25StateEvent.createUnitDataEvent(AX25Call.create("NODES", 0), Protocol.NETROM, nodesData));
+        }
         //Thread.sleep(2000); // Slight delay between broadcasts
       }
     }, 15, netromConfig.getNodesInterval(), TimeUnit.SECONDS);
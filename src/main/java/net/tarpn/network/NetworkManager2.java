@@ -196,11 +196,13 @@ public class NetworkManager2 {
         MDC.put("node", netromConfig.getNodeAlias());
 
         NetRomNodes nodes = router.getNodes();
-        byte[] nodesData = NetRomNodes.write(nodes);
+        List<byte[]> nodesFrames = NetRomNodes.writeFrames(nodes);
         for(DataLink portManager : dataPorts.values()) {
             LOG.info("Sending automatic NODES message on " + portManager.getDataPort() + ": " + nodes);
-            portManager.getAx25StateHandler().getEventQueue().add(
-                    AX25StateEvent.createUnitDataEvent(AX25Call.create("NODES", 0), Protocol.NETROM, nodesData));
+            for(byte[] nodesData : nodesFrames) {
+                portManager.getAx25StateHandler().getEventQueue().add(
+                        AX25StateEvent.createUnitDataEvent(AX25Call.create("NODES", 0), Protocol.NETROM, nodesData));
+            }
         }
     }
 
@@ -229,14 +231,13 @@ public class NetworkManager2 {
                 netRomPacket.getOriginNode(),
                 Protocol.NETROM,
                 netRomPacket.getPayload());
-        List<AX25Call> potentialRoutes = router.routePacket(dataLinkPrimitive.getRemoteCall());
+        List<Neighbor> potentialRoutes = router.routeToNeighbors(dataLinkPrimitive.getRemoteCall());
         boolean routed = false;
 
-        for(AX25Call route : potentialRoutes) {
-            Neighbor neighbor = router.getNeighbors().get(route);
+        for(Neighbor neighbor : potentialRoutes) {
             int routePort = neighbor.getPort();
             DataLink portManager = dataPorts.get(routePort);
-            AX25State state = portManager.getAx25StateHandler().getState(route);
+            AX25State state = portManager.getAx25StateHandler().getState(neighbor.getNodeCall());
             if(state.getState().equals(State.DISCONNECTED)) {
                 portManager.sendDataLinkEvent(DataLinkPrimitive.newConnectRequest(
                         neighbor.getNodeCall(), netromConfig.getNodeCall()));
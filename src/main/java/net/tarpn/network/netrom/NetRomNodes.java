@@ -5,13 +5,38 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import net.tarpn.util.Util;
+import java.util.function.Consumer;
 import net.tarpn.packet.impl.ax25.AX25Call;
 
 /**
  * Helper class to parse NODES broadcast for updating the {@link NetRomRoutingTable}
+ *
+ * {@link #read(byte[])} decodes the whole broadcast into a list. To update the routing table as the
+ * broadcast is parsed instead, use {@link #readSendingAlias(byte[])} and
+ * {@link #forEachDestination(byte[], Consumer)}, which don't allocate per entry.
  */
 public class NetRomNodes {
+
+  /**
+   * 0xFF, then the sender's six character alias
+   */
+  static final int HEADER_LENGTH = 7;
+
+  /**
+   * Destination call, alias, best neighbor call, and quality
+   */
+  static final int ENTRY_LENGTH = 21;
+
+  /**
+   * Most bytes of NODES to put in one UI frame, the largest a NET/ROM node will accept
+   */
+  public static final int MAX_FRAME_LENGTH = 236;
+
+  /**
+   * Destinations which fit in one UI frame along with the header
+   */
+  public static final int MAX_ENTRIES_PER_FRAME = (MAX_FRAME_LENGTH - HEADER_LENGTH) / ENTRY_LENGTH;
+
   private final String sendingAlias;
   private final List<NodeDestination> destinationList;
 
@@ -44,19 +69,76 @@ public class NetRomNodes {
     return new NetRomNodes(sendingAlias.trim(), destinations);
   }
 
+  /**
+   * Read just the alias of the node which sent this broadcast
+   */
+  public static String readSendingAlias(byte[] nodeInfo) {
+    int length = Math.max(0, Math.min(6, nodeInfo.length - 1));
+    return new String(nodeInfo, Math.min(1, nodeInfo.length), length, StandardCharsets.US_ASCII).trim();
+  }
+
+  /**
+   * Pass each destination in the broadcast to the consumer as it is parsed. The same {@link Entry} is
+   * reused for every destination, so the consumer must not hang on to it. A partial entry at the end is
+   * ignored.
+   *
+   * @return the number of destinations read
+   */
+  public static int forEachDestination(byte[] nodeInfo, Consumer<Entry> consumer) {
+    EntryView view = new EntryView(nodeInfo);
+    int count = 0;
+    for(int offset = HEADER_LENGTH; offset + ENTRY_LENGTH <= nodeInfo.length; offset += ENTRY_LENGTH) {
+      view.moveTo(offset);
+      consumer.accept(view);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Write the whole table as a single payload. This can be longer than one UI frame, see
+   * {@link #writeFrames(NetRomNodes)} for broadcasting.
+   */
   public static byte[] write(NetRomNodes nodes) {
-    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    return write(nodes.getSendingAlias(), nodes.getDestinationList());
+  }
+
+  /**
+   * Split the table into payloads of at most {@link #MAX_FRAME_LENGTH} bytes, each with the NODES header,
+   * so that each can be sent in its own UI frame. An empty table still gives one (header only) frame so
+   * our neighbors hear about us.
+   */
+  public static List<byte[]> writeFrames(NetRomNodes nodes) {
+    List<NodeDestination> destinations = nodes.getDestinationList();
+    List<byte[]> frames = new ArrayList<>(destinations.size() / MAX_ENTRIES_PER_FRAME + 1);
+    int offset = 0;
+    do {
+      int end = Math.min(destinations.size(), offset + MAX_ENTRIES_PER_FRAME);
+      frames.add(write(nodes.getSendingAlias(), destinations.subList(offset, end)));
+      offset = end;
+    } while (offset < destinations.size());
+    return frames;
+  }
+
+  private static byte[] write(String sendingAlias, List<NodeDestination> destinations) {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + ENTRY_LENGTH * destinations.size());
     buffer.put((byte)0xff);
-    byte[] alias = String.format("%1$-6s", nodes.getSendingAlias()).getBytes(StandardCharsets.US_ASCII);
-    buffer.put(alias);
-    for(NodeDestination dest : nodes.getDestinationList()) {
+    buffer.put(aliasBytes(sendingAlias));
+    for(NodeDestination dest : destinations) {
       dest.getDestNode().write(buffer::put);
-      byte[] destAlias = String.format("%1$-6s", dest.getDestAlias()).getBytes(StandardCharsets.US_ASCII);
-      buffer.put(destAlias);
+      buffer.put(aliasBytes(dest.getDestAlias()));
       dest.getBestNeighborNode().write(buffer::put);
       buffer.put((byte)(dest.getQuality() & 0xff));
     }
-    return Util.copyFromBuffer(buffer);
+    return buffer.array();
+  }
+
+  /**
+   * An alias is always six characters on the wire, padded with spaces
+   */
+  private static byte[] aliasBytes(String alias) {
+    String padded = String.format("%1$-6s", alias);
+    return padded.substring(0, 6).getBytes(StandardCharsets.US_ASCII);
   }
 
   public String getSendingAlias() {
@@ -75,7 +157,61 @@ public class NetRomNodes {
         '}';
   }
 
-  public static class NodeDestination {
+  /**
+   * One destination in a NODES broadcast
+   */
+  public interface Entry {
+    AX25Call getDestNode();
+
+    String getDestAlias();
+
+    AX25Call getBestNeighborNode();
+
+    int getQuality();
+  }
+
+  /**
+   * An {@link Entry} read straight from the broadcast. The calls come from {@link AX25Call}'s cache, and
+   * the alias is only decoded if someone asks for it.
+   */
+  private static final class EntryView implements Entry {
+    private final byte[] data;
+    private final ByteBuffer buffer;
+    private int offset;
+
+    private EntryView(byte[] data) {
+      this.data = data;
+      this.buffer = ByteBuffer.wrap(data);
+    }
+
+    private void moveTo(int offset) {
+      this.offset = offset;
+    }
+
+    @Override
+    public AX25Call getDestNode() {
+      buffer.position(offset);
+      return AX25Call.read(buffer);
+    }
+
+    @Override
+    public String getDestAlias() {
+      return new String(data, offset + 7, 6, StandardCharsets.US_ASCII).trim();
+    }
+
+    @Override
+    public AX25Call getBestNeighborNode() {
+      buffer.position(offset + 13);
+      return AX25Call.read(buffer);
+    }
+
+    @Override
+    public int getQuality() {
+      return data[offset + 20] & 0xff;
+    }
+  }
+
+  public static class NodeDestination implements Entry {
     private final AX25Call destNode;
     private final String destAlias;
     private final AX25Call bestNeighborNode;
@@ -90,18 +226,22 @@ public class NetRomNodes {
       this.quality = quality;
     }
 
+    @Override
     public AX25Call getDestNode() {
       return destNode;
     }
 
+    @Override
     public String getDestAlias() {
       return destAlias;
     }
 
+    @Override
     public AX25Call getBestNeighborNode() {
       return bestNeighborNode;
     }
 
+    @Override
     public int getQuality() {
       return quality;
     }
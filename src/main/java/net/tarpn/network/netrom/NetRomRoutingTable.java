@@ -2,6 +2,7 @@ package net.tarpn.network.netrom;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -11,6 +12,7 @@ import net.tarpn.config.PortConfig;
 import net.tarpn.network.netrom.NetRomNodes.NodeDestination;
 import net.tarpn.network.netrom.NetRomRoutingTable.Destination.DestinationRoute;
 import net.tarpn.packet.impl.ax25.AX25Call;
+import net.tarpn.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -19,106 +21,237 @@ public class NetRomRoutingTable {
 
   private static final Logger LOG = LoggerFactory.getLogger(NetRomRoutingTable.class);
 
+  /**
+   * Most next hops to try for a destination
+   */
+  public static final int MAX_ROUTES = 3;
+
+  private static final int DEFAULT_HOLD_DOWN_MS = 5000;
+
   private final NetRomConfig config;
   private final Map<AX25Call, Neighbor> neighbors;
   private final Map<AX25Call, Destination> destinations;
+
+  /**
+   * The next hops for each destination (or neighbor), best first. An entry is rebuilt whenever the routes
+   * for its destination change, so forwarding a packet is a single lookup.
+   */
+  private final Map<AX25Call, List<AX25Call>> forwardingIndex;
+
+  /**
+   * An immutable copy of the forwarding index and neighbors. The maps above are only touched while holding
+   * this table's lock, and each update publishes a new snapshot when it's done. Packets are routed from the
+   * snapshot, so readers on any thread never block or see a table half way through an update.
+   */
+  private static final class Snapshot {
+    private static final Snapshot EMPTY =
+        new Snapshot(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<AX25Call, List<AX25Call>> routes;
+    private final Map<AX25Call, Neighbor> neighbors;
+
+    /**
+     * The routes with each next hop already resolved to its neighbor
+     */
+    private final Map<AX25Call, List<Neighbor>> neighborRoutes;
+
+    private Snapshot(Map<AX25Call, List<AX25Call>> routes, Map<AX25Call, Neighbor> neighbors,
+                     Map<AX25Call, List<Neighbor>> neighborRoutes) {
+      this.routes = routes;
+      this.neighbors = neighbors;
+      this.neighborRoutes = neighborRoutes;
+    }
+  }
+
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+  /**
+   * Scratch space for {@link #updateIndex(AX25Call)}
+   */
+  private final DestinationRoute[] bestRoutes = new DestinationRoute[MAX_ROUTES];
   private final Function<Integer, PortConfig> portConfigGetter;
   private final Consumer<Neighbor> newNeighborHandler;
 
+  /**
+   * The best route we last told our neighbors about for each destination, and the destinations whose best
+   * route has changed since. Changes are held for "netrom.nodes.holddown" milliseconds so a burst of them
+   * (like a whole NODES broadcast) goes out as one triggered update. A hold-down of zero turns off
+   * triggered updates, leaving just the periodic broadcasts.
+   */
+  private final Map<AX25Call, NodeDestination> advertised;
+  private final Set<AX25Call> changed;
+  private final List<Consumer<NetRomNodes>> updateListeners;
+  private final Timer holdDownTimer;
+
   public NetRomRoutingTable(NetRomConfig config, Function<Integer, PortConfig> portConfigGetter,
                             Consumer<Neighbor> newNeighborHandler) {
     this.config = config;
     this.neighbors = new HashMap<>();
     this.destinations = new HashMap<>();
+    this.forwardingIndex = new HashMap<>();
     this.portConfigGetter = portConfigGetter;
     this.newNeighborHandler = newNeighborHandler;
+    this.advertised = new HashMap<>();
+    this.changed = new LinkedHashSet<>();
+    this.updateListeners = new CopyOnWriteArrayList<>();
+    this.holdDownTimer = Timer.create(config.getInt("netrom.nodes.holddown", DEFAULT_HOLD_DOWN_MS),
+        this::sendTriggeredUpdate);
     MDC.put("node", config.getNodeAlias());
   }
 
-  public void addNeighbor(AX25Call heardFrom, int heardOnPort) {
+  /**
+   * Be told about each triggered update, a {@link NetRomNodes} with just the destinations whose best route
+   * changed. A destination we can no longer reach is sent with a quality of zero. The listener is called
+   * from the timer thread.
+   */
+  public void addUpdateListener(Consumer<NetRomNodes> listener) {
+    updateListeners.add(listener);
+  }
+
+  public void removeUpdateListener(Consumer<NetRomNodes> listener) {
+    updateListeners.remove(listener);
+  }
+
+  public synchronized void addNeighbor(AX25Call heardFrom, int heardOnPort) {
     PortConfig portConfig = portConfigGetter.apply(heardOnPort);
     int defaultQuality = portConfig.getInt("port.quality", 255);
-    neighbors.computeIfAbsent(heardFrom,
-            call -> new Neighbor(call, heardOnPort, defaultQuality));
+    if (!neighbors.containsKey(heardFrom)) {
+      neighbors.put(heardFrom, new Neighbor(heardFrom, heardOnPort, defaultQuality));
+      updateIndex(heardFrom);
+      publish();
+    }
   }
   /**
    * Process an incoming NODES payload and update our routing table
    */
   public void updateNodes(AX25Call heardFrom, int heardOnPort, NetRomNodes nodes) {
+    updateNodes(heardFrom, heardOnPort, nodes.getSendingAlias(),
+        routeUpdater -> nodes.getDestinationList().forEach(routeUpdater));
+  }
+
+  /**
+   * Process a NODES payload straight from the UI frame. Each entry is applied to the routing table as it
+   * is read, rather than decoding the whole thing into a {@link NetRomNodes} first.
+   */
+  public void updateNodes(AX25Call heardFrom, int heardOnPort, byte[] nodesInfo) {
+    updateNodes(heardFrom, heardOnPort, NetRomNodes.readSendingAlias(nodesInfo),
+        routeUpdater -> NetRomNodes.forEachDestination(nodesInfo, routeUpdater));
+  }
+
+  private void updateNodes(AX25Call heardFrom, int heardOnPort, String sendingAlias,
+                           Consumer<Consumer<NetRomNodes.Entry>> entries) {
     MDC.put("node", config.getNodeAlias());
 
-    LOG.info("Got routing table from " + nodes.getSendingAlias());
-    Set<Neighbor> neighborsBefore = new HashSet<>(neighbors.values());
-    PortConfig portConfig = portConfigGetter.apply(heardOnPort);
-    int defaultQuality = portConfig.getInt("port.quality", 255);
-    int defaultObs = config.getInitialObs();
-
-    Neighbor neighbor = neighbors.computeIfAbsent(heardFrom,
-        call -> new Neighbor(call, heardOnPort, defaultQuality));
-
-    Destination destination = destinations.computeIfAbsent(heardFrom,
-        call -> new Destination(call, nodes.getSendingAlias())
-    );
-
-    // Add direct route to whoever send the NODES
-    destination.getNeighborMap().put(heardFrom,
-        new DestinationRoute(heardFrom, heardFrom, defaultQuality, defaultObs));
-
-    // Add destination routes for every node we learned about
-    nodes.getDestinationList().stream()
-        .filter(nodeDestination -> !nodeDestination.getDestNode().equals(config.getNodeCall()))
-        .forEach(nodeDestination -> {
-          final int routeQuality;
-          if(nodeDestination.getBestNeighborNode().equals(config.getNodeCall())) {
-            // Best neighbor is us, this is a "trivial loop", quality is zero
-            routeQuality = 0;
-          } else {
-            // Otherwise compute this route's quality based on the spec
-            int qualityProduct = nodeDestination.getQuality() * neighbor.getQuality();
-            routeQuality = (qualityProduct + 128) / 256;
-          }
+    LOG.info("Got routing table from " + sendingAlias);
+    Neighbor newNeighbor = null;
+    synchronized (this) {
+      PortConfig portConfig = portConfigGetter.apply(heardOnPort);
+      int defaultQuality = portConfig.getInt("port.quality", 255);
+      int defaultObs = config.getInitialObs();
+      int minQuality = config.getInt("netrom.nodes.quality.min", 0);
+      AX25Call ourCall = config.getNodeCall();
+
+      // Only the sender can be a new neighbor
+      Neighbor neighbor = neighbors.get(heardFrom);
+      if (neighbor == null) {
+        neighbor = new Neighbor(heardFrom, heardOnPort, defaultQuality);
+        neighbors.put(heardFrom, neighbor);
+        newNeighbor = neighbor;
+      }
 
-          // Only add high quality routes to our routing table
-          if(routeQuality > config.getInt("netrom.nodes.quality.min", 0)) {
-            Destination neighborDest = destinations.computeIfAbsent(nodeDestination.getDestNode(),
-                call -> new Destination(call, nodeDestination.getDestAlias())
-            );
-            DestinationRoute destRoute = neighborDest.getNeighborMap().computeIfAbsent(neighbor.getNodeCall(),
-                newCall -> new DestinationRoute(nodeDestination.getDestNode(), neighbor.getNodeCall(), routeQuality, defaultObs));
-            destRoute.setObsolescence(defaultObs);
-            destRoute.setQuality(routeQuality);
-          } else {
-            if(routeQuality > 0) {
-              LOG.warn(
-                  "Learned about " + neighbor.getNodeCall() + ", but quality was too low to add "
-                      + "to our routing table (" + routeQuality + ")");
-            }
-          }
-        });
-    Set<Neighbor> neighborsAfter = new HashSet<>(neighbors.values());
-    neighborsAfter.removeAll(neighborsBefore);
-    if (!neighborsAfter.isEmpty()) {
-      LOG.info("New neighbors: " + neighborsAfter);
-      neighborsAfter.forEach(newNeighborHandler);
-    }
-    LOG.info("New routing table from " + nodes.getSendingAlias() + ": " + this);
+      Destination destination = destinations.computeIfAbsent(heardFrom,
+          call -> new Destination(call, sendingAlias)
+      );
+
+      // Add direct route to whoever send the NODES
+      destination.getNeighborMap().put(heardFrom,
+          new DestinationRoute(heardFrom, heardFrom, defaultQuality, defaultObs));
+      updateIndex(heardFrom);
+      trackChange(heardFrom);
+
+      // Add destination routes for every node we learned about
+      Neighbor via = neighbor;
+      entries.accept(entry -> addRoute(via, entry, ourCall, minQuality, defaultObs));
+      publish();
+      startHoldDown();
+    }
+    if (newNeighbor != null) {
+      LOG.info("New neighbor: " + newNeighbor);
+      newNeighborHandler.accept(newNeighbor);
+    }
+    LOG.info("New routing table from " + sendingAlias + ": " + this);
+  }
+
+  /**
+   * Add or refresh the route to one destination from a neighbor's NODES
+   */
+  private void addRoute(Neighbor neighbor, NetRomNodes.Entry entry, AX25Call ourCall, int minQuality, int defaultObs) {
+    AX25Call destNode = entry.getDestNode();
+    if (destNode.equals(ourCall)) {
+      return;
+    }
+
+    final int routeQuality;
+    if(entry.getBestNeighborNode().equals(ourCall)) {
+      // Best neighbor is us, this is a "trivial loop", quality is zero
+      routeQuality = 0;
+    } else {
+      // Otherwise compute this route's quality based on the spec
+      int qualityProduct = entry.getQuality() * neighbor.getQuality();
+      routeQuality = (qualityProduct + 128) / 256;
+    }
+
+    // Only add high quality routes to our routing table
+    if(routeQuality > minQuality) {
+      Destination neighborDest = destinations.get(destNode);
+      if (neighborDest == null) {
+        neighborDest = new Destination(destNode, entry.getDestAlias());
+        destinations.put(destNode, neighborDest);
+      }
+      DestinationRoute destRoute = neighborDest.getNeighborMap().get(neighbor.getNodeCall());
+      if (destRoute == null) {
+        destRoute = new DestinationRoute(destNode, neighbor.getNodeCall(), routeQuality, defaultObs);
+        neighborDest.getNeighborMap().put(neighbor.getNodeCall(), destRoute);
+      } else {
+        destRoute.setObsolescence(defaultObs);
+        destRoute.setQuality(routeQuality);
+      }
+      updateIndex(destNode);
+      trackChange(destNode);
+    } else {
+      // The neighbor can't (or can no longer) get there for us, so stop using it
+      Destination neighborDest = destinations.get(destNode);
+      if (neighborDest != null && neighborDest.getNeighborMap().remove(neighbor.getNodeCall()) != null) {
+        updateIndex(destNode);
+        trackChange(destNode);
+      }
+      if(routeQuality > 0) {
+        LOG.warn(
+            "Learned about " + neighbor.getNodeCall() + ", but quality was too low to add "
+                + "to our routing table (" + routeQuality + ")");
+      }
+    }
   }
 
   /**
    * Decrement the obsolescence count for each route and remove those which have reached zero. Also
    * remove any neighbors which no longer have any routes.
    */
-  public void pruneRoutes() {
+  public synchronized void pruneRoutes() {
     MDC.put("node", config.getNodeAlias());
 
     destinations.forEach(((ax25Call, destination) -> {
       destination.getNeighborMap().values().forEach(DestinationRoute::decrementObsolescence);
-      destination.getNeighborMap().entrySet().removeIf(entry -> entry.getValue().getObsolescence() <= 0);
+      if (destination.getNeighborMap().entrySet().removeIf(entry -> entry.getValue().getObsolescence() <= 0)) {
+        updateIndex(ax25Call);
+      }
+      // Even if no route was removed, the best one may now be too old to advertise
+      trackChange(ax25Call);
     }));
 
     Set<AX25Call> noRoutes = destinations.entrySet()
         .stream()
-        .filter(entry -> entry.getValue().getSortedNeighbors().isEmpty())
+        .filter(entry -> entry.getValue().getNeighborMap().isEmpty())
         .map(Entry::getKey)
         .collect(Collectors.toSet());
 
@@ -126,70 +259,209 @@ public class NetRomRoutingTable {
       LOG.info("No routes to " + ax25Call + ". Removing from routing table");
       destinations.remove(ax25Call);
       neighbors.remove(ax25Call);
+      updateIndex(ax25Call);
+      trackChange(ax25Call);
     });
+    publish();
+    startHoldDown();
+  }
+
+  /**
+   * Note whether the route we'd advertise for a destination differs from the one we last sent
+   */
+  private void trackChange(AX25Call destCall) {
+    if (holdDownTimer.getTimeout() <= 0) {
+      return;
+    }
+    Destination destination = destinations.get(destCall);
+    DestinationRoute current = destination == null ? null : destination.advertisedRoute(config.getMinObs());
+    NodeDestination last = advertised.get(destCall);
+    boolean same = (current == null) ? (last == null) :
+        (last != null && last.getBestNeighborNode().equals(current.getNextHop())
+            && last.getQuality() == current.getQuality());
+    if (same) {
+      changed.remove(destCall);
+    } else {
+      changed.add(destCall);
+    }
+  }
+
+  private void startHoldDown() {
+    if (!changed.isEmpty() && !holdDownTimer.isRunning()) {
+      holdDownTimer.start();
+    }
+  }
+
+  /**
+   * Collect the destinations whose best route has changed since the last triggered update, and consider
+   * them sent. Destinations we've lost are included with a quality of zero.
+   *
+   * @return the changes, or null if there are none
+   */
+  synchronized NetRomNodes takeChanges() {
+    if (changed.isEmpty()) {
+      return null;
+    }
+    List<NodeDestination> changes = new ArrayList<>(changed.size());
+    for (AX25Call destCall : changed) {
+      Destination destination = destinations.get(destCall);
+      DestinationRoute route = destination == null ? null : destination.advertisedRoute(config.getMinObs());
+      if (route != null) {
+        NodeDestination entry = new NodeDestination(destCall, destination.getNodeAlias(),
+            route.getNextHop(), route.getQuality());
+        advertised.put(destCall, entry);
+        changes.add(entry);
+      } else {
+        NodeDestination last = advertised.remove(destCall);
+        if (last != null) {
+          changes.add(new NodeDestination(destCall, last.getDestAlias(), last.getBestNeighborNode(), 0));
+        }
+      }
+    }
+    changed.clear();
+    return changes.isEmpty() ? null : new NetRomNodes(config.getNodeAlias(), changes);
+  }
+
+  private void sendTriggeredUpdate() {
+    NetRomNodes changes = takeChanges();
+    if (changes != null) {
+      MDC.put("node", config.getNodeAlias());
+      LOG.info("Sending triggered NODES update with " + changes.getDestinationList().size() + " changes");
+      updateListeners.forEach(listener -> listener.accept(changes));
+    }
+  }
+
+  /**
+   * Make the changes to the forwarding index visible to {@link #routePacket(AX25Call)} and
+   * {@link #routeToNeighbors(AX25Call)}. The neighbors for each destination are looked up here, once per
+   * update, rather than for every packet.
+   */
+  private void publish() {
+    Map<AX25Call, List<Neighbor>> neighborRoutes = new HashMap<>(forwardingIndex.size());
+    forwardingIndex.forEach((destCall, nextHops) -> {
+      List<Neighbor> resolved = new ArrayList<>(nextHops.size());
+      for (AX25Call nextHop : nextHops) {
+        Neighbor neighbor = neighbors.get(nextHop);
+        if (neighbor != null) {
+          resolved.add(neighbor);
+        }
+      }
+      if (!resolved.isEmpty()) {
+        neighborRoutes.put(destCall, Collections.unmodifiableList(resolved));
+      }
+    });
+    snapshot = new Snapshot(
+        Collections.unmodifiableMap(new HashMap<>(forwardingIndex)),
+        Collections.unmodifiableMap(new HashMap<>(neighbors)),
+        neighborRoutes);
+  }
+
+  /**
+   * Rebuild the forwarding index entry for a destination after its routes have changed. If the best next
+   * hops are the same as before, the existing entry is left alone.
+   */
+  private void updateIndex(AX25Call destCall) {
+    Destination destination = destinations.get(destCall);
+    if (destination != null && !destination.getNeighborMap().isEmpty()) {
+      int count = destination.bestRoutes(bestRoutes);
+      List<AX25Call> existing = forwardingIndex.get(destCall);
+      if (existing != null && existing.size() == count) {
+        boolean same = true;
+        for (int i = 0; i < count && same; i++) {
+          same = existing.get(i).equals(bestRoutes[i].getNextHop());
+        }
+        if (same) {
+          return;
+        }
+      }
+      AX25Call[] nextHops = new AX25Call[count];
+      for (int i = 0; i < count; i++) {
+        nextHops[i] = bestRoutes[i].getNextHop();
+      }
+      forwardingIndex.put(destCall, Collections.unmodifiableList(Arrays.asList(nextHops)));
+    } else if (neighbors.containsKey(destCall)) {
+      forwardingIndex.put(destCall, Collections.singletonList(destCall));
+    } else {
+      forwardingIndex.remove(destCall);
+    }
   }
 
   /**
    * Convert our routing table to a NODES payload, only including routes whose obsolescence count
-   * is above "netrom.obs.min"
+   * is above "netrom.obs.min". This is for a full broadcast, so everything in it is considered advertised
+   * and won't go out again in a triggered update unless it changes. Destinations we've lost aren't in a full
+   * broadcast, so their withdrawals are still left for the next triggered update.
    * @return
    */
-  public NetRomNodes getNodes() {
+  public synchronized NetRomNodes getNodes() {
+    boolean tracking = holdDownTimer.getTimeout() > 0;
     List<NodeDestination> destinations = new ArrayList<>();
-    getDestinations().forEach((destCall, dest) -> {
-      dest.getSortedNeighbors()
-          .stream()
-          .filter(neighbor -> neighbor.getObsolescence() >= config.getMinObs())
-          .findFirst()
-          .ifPresent(bestNeighbor -> destinations.add(
-              new NodeDestination(dest.getNodeCall(), dest.getNodeAlias(),
-                  bestNeighbor.getNextHop(), bestNeighbor.getQuality())));
+    this.destinations.forEach((destCall, dest) -> {
+      DestinationRoute bestNeighbor = dest.advertisedRoute(config.getMinObs());
+      if (bestNeighbor != null) {
+        NodeDestination entry = new NodeDestination(dest.getNodeCall(), dest.getNodeAlias(),
+            bestNeighbor.getNextHop(), bestNeighbor.getQuality());
+        destinations.add(entry);
+        if (tracking) {
+          advertised.put(destCall, entry);
+          changed.remove(destCall);
+        }
+      }
     });
     return new NetRomNodes(config.getNodeAlias(), destinations);
   }
 
   /**
-   * Return a list of potential neighbors to route a packet for this call to.
+   * Return a list of potential neighbors to route a packet for this call to, best first. This is called
+   * for every packet we forward, from any port's thread, so it only looks at the latest published snapshot
+   * of the forwarding index and never locks.
    * @param destCall
    * @return
    */
   public List<AX25Call> routePacket(AX25Call destCall) {
-    MDC.put("node", config.getNodeAlias());
-
-    Destination destination = destinations.get(destCall);
-    if(destination != null) {
-      List<AX25Call> routes = destination.getSortedNeighbors()
-          .stream()
-          .map(DestinationRoute::getNextHop)
-          .collect(Collectors.toList());
-      LOG.info("Found routes to " + destCall + ": " + routes);
-      return routes;
-    } else {
-      if (neighbors.containsKey(destCall)) {
-        return Collections.singletonList(destCall);
-      } else {
-        return Collections.emptyList();
-      }
+    List<AX25Call> routes = snapshot.routes.get(destCall);
+    if (routes == null) {
+      return Collections.emptyList();
     }
+    if (LOG.isDebugEnabled()) {
+      MDC.put("node", config.getNodeAlias());
+      LOG.debug("Found routes to " + destCall + ": " + routes);
+    }
+    return routes;
+  }
+
+  /**
+   * Like {@link #routePacket(AX25Call)}, but return the neighbors themselves. These are resolved when the
+   * snapshot is published, so this is a single lookup that allocates nothing, and a neighbor that was
+   * dropped by an update can't turn up as a route with nothing behind it.
+   */
+  public List<Neighbor> routeToNeighbors(AX25Call destCall) {
+    return snapshot.neighborRoutes.getOrDefault(destCall, Collections.emptyList());
   }
 
+  /**
+   * @return the neighbors as of the last update, safe to read from any thread
+   */
   public Map<AX25Call, Neighbor> getNeighbors() {
-    return neighbors;
+    return snapshot.neighbors;
   }
 
-  public Map<AX25Call, Destination> getDestinations() {
-    return destinations;
+  /**
+   * @return a copy of the destinations. The routes in them may still be changed by later updates.
+   */
+  public synchronized Map<AX25Call, Destination> getDestinations() {
+    return new HashMap<>(destinations);
   }
 
   @Override
-  public String toString() {
+  public synchronized String toString() {
     return "NetRomRouter{" +
         "neighbors=" + neighbors +
         ", destinations=" + destinations +
         '}';
   }
 
-  public String toPrettyString() {
+  public synchronized String toPrettyString() {
     StringBuilder builder = new StringBuilder("NET/ROM routing table:\n");
     destinations.forEach((ax25Call, destination) -> {
       builder.append(destination).append("\n");
@@ -277,10 +549,50 @@ public class NetRomRoutingTable {
       return neighborMap;
     }
 
+    /**
+     * Find the best routes to this destination without sorting all of them
+     *
+     * @param best filled in with the best routes, best quality first
+     * @return how many routes were filled in
+     */
+    int bestRoutes(DestinationRoute[] best) {
+      int count = 0;
+      for (DestinationRoute route : neighborMap.values()) {
+        int idx = count;
+        while (idx > 0 && best[idx - 1].getQuality() < route.getQuality()) {
+          if (idx < best.length) {
+            best[idx] = best[idx - 1];
+          }
+          idx--;
+        }
+        if (idx < best.length) {
+          best[idx] = route;
+          count = Math.min(count + 1, best.length);
+        }
+      }
+      return count;
+    }
+
+    /**
+     * @return the best route which is fresh enough to tell our neighbors about, or null if there isn't one
+     */
+    DestinationRoute advertisedRoute(int minObs) {
+      DestinationRoute best = null;
+      for (DestinationRoute route : neighborMap.values()) {
+        if (route.getObsolescence() >= minObs && (best == null || route.getQuality() > best.getQuality())) {
+          best = route;
+        }
+      }
+      return best;
+    }
+
+    /**
+     * @return the routes to this destination, best quality first
+     */
     public List<DestinationRoute> getSortedNeighbors() {
       return neighborMap.values()
           .stream()
-          .sorted(Comparator.comparingInt(DestinationRoute::getQuality))
+          .sorted(Comparator.comparingInt(DestinationRoute::getQuality).reversed())
           .collect(Collectors.toList());
     }
 
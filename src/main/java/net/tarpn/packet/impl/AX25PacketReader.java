@@ -13,6 +13,7 @@ import net.tarpn.packet.impl.ax25.AX25Packet;
 import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame.ControlType;
 import net.tarpn.packet.impl.ax25.IFrame;
 import net.tarpn.packet.impl.ax25.SFrame;
+import net.tarpn.packet.impl.ax25.SSIDFlags;
 import net.tarpn.packet.impl.ax25.UFrame;
 import net.tarpn.packet.impl.ax25.UIFrame;
 import org.slf4j.Logger;
@@ -33,16 +34,26 @@ public class AX25PacketReader implements PacketReader {
   }
 
   public static AX25Packet parse(byte[] packet) {
+    return parse(packet, false);
+  }
+
+  /**
+   * Parse a frame. Whether I and S frames have a two byte (modulo 128) control field can't be told from the
+   * frame itself, it depends on how the link was set up (SABME vs SABM).
+   *
+   * @param extended true if I and S frames on this link have a modulo 128 control field
+   */
+  public static AX25Packet parse(byte[] packet, boolean extended) {
     ByteBuffer buffer = ByteBuffer.wrap(packet);
 
     AX25Call dest = AX25Call.read(buffer);
     AX25Call source = AX25Call.read(buffer);
     List<AX25Call> paths = new ArrayList<>();
-    if(!source.isLast()) {
+    if(!lastAddress(buffer)) {
       while(true) {
         AX25Call rpt = AX25Call.read(buffer);
         paths.add(rpt);
-        if(rpt.isLast()) {
+        if(lastAddress(buffer)) {
           break;
         }
       }
@@ -54,11 +65,16 @@ public class AX25PacketReader implements PacketReader {
     final AX25Packet frame;
     if((controlByte & 0x01) == 0) {
       // I frame
+      byte controlByte2 = extended ? buffer.get() : 0;
       byte pidByte = buffer.get();
       int infoLen = packet.length - buffer.position();
       byte[] info = new byte[infoLen];
       buffer.get(info, 0, infoLen);
-      frame = new IFrame(packet, dest, source, paths, controlByte, info, pidByte);
+      if(extended) {
+        frame = new IFrame(packet, dest, source, paths, controlByte, controlByte2, info, pidByte);
+      } else {
+        frame = new IFrame(packet, dest, source, paths, controlByte, info, pidByte);
+      }
     } else {
       if((controlByte & 0x03) == 0x03) {
         ControlType controlType = ControlType.fromControlByte(controlByte);
@@ -73,10 +89,19 @@ public class AX25PacketReader implements PacketReader {
         } else {
           frame = new UFrame(packet, dest, source, paths, controlByte, pollFinalSet);
         }
+      } else if(extended) {
+        frame = new SFrame(packet, dest, source, paths, controlByte, buffer.get());
       } else {
         frame = new SFrame(packet, dest, source, paths, controlByte, pollFinalSet);
       }
     }
     return frame;
   }
+
+  /**
+   * Check the last bit of the SSID byte of the address we just read
+   */
+  private static boolean lastAddress(ByteBuffer buffer) {
+    return SSIDFlags.isLast(SSIDFlags.of(buffer.get(buffer.position() - 1)));
+  }
 }
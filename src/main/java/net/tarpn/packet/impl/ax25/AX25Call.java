@@ -3,12 +3,33 @@ package net.tarpn.packet.impl.ax25;
 import org.fusesource.jansi.Ansi;
 
 import java.nio.ByteBuffer;
-import java.util.Objects;
 
+/**
+ * A station's callsign and SSID.
+ *
+ * Instances are immutable and safe to share between threads. Internally the address is kept as the 7 bytes
+ * it has on the wire, packed into a long, so equality and hashing don't need to look at any strings. Addresses
+ * read from packets come from a small canonical cache keyed by those 7 bytes, so parsing the same stations
+ * over and over doesn't allocate.
+ *
+ * The other bits of the SSID byte (C/H, RR, and the last address bit) belong to a particular frame, see
+ * {@link SSIDFlags}.
+ */
 public class AX25Call {
 
   public static final AX25Call WILDCARD = AX25Call.create("*", 0);
 
+  /**
+   * Size of the direct mapped cache used by {@link #read(ByteBuffer)}, must be a power of two
+   */
+  private static final int CACHE_SIZE = 1024;
+  private static final AX25Call[] CACHE = new AX25Call[CACHE_SIZE];
+
+  /**
+   * Bits of the SSID byte which identify the station
+   */
+  private static final long SSID_MASK = 0x1E;
+
   @FunctionalInterface
   public interface ByteConsumer {
     void accept(byte b);
@@ -17,23 +38,34 @@ public class AX25Call {
   private final String call;
   private final int ssid;
 
-  private int rr;
-  private boolean cFlag;
-  private boolean last;
+  /**
+   * The 7 address bytes as written on the wire (callsign upper cased), without any flags
+   */
+  private final long raw;
+  private final int hash;
 
-  AX25Call(String call, int ssid, int rr, boolean cFlag, boolean last) {
+  AX25Call(String call, int ssid) {
     this.call = call.toUpperCase();
     this.ssid = ssid;
-    this.rr = rr;
-    this.cFlag = cFlag;
-    this.last = last;
+    long packed = 0;
+    for(int i=0; i<6; i++) {
+      final char c;
+      if(i > this.call.length() - 1) {
+        c = ' ';
+      } else {
+        c = this.call.charAt(i);
+      }
+      packed = (packed << 8) | (((c & 0xFF) << 1) & 0xFF);
+    }
+    this.raw = (packed << 8) | ((ssid << 1) & SSID_MASK);
+    this.hash = Long.hashCode(raw * 0x9E3779B97F4A7C15L);
   }
 
   public boolean callMatches(AX25Call other) {
     if (other == null) {
       return false;
     }
-    return other.call.equalsIgnoreCase(this.call);
+    return (other.raw >>> 8) == (this.raw >>> 8);
   }
 
   public static AX25Call create(String callWithSSID) {
@@ -46,44 +78,60 @@ public class AX25Call {
   }
 
   public static AX25Call create(String call, int ssid) {
-    return create(call, ssid, 0, false, false);
+    return new AX25Call(call, ssid);
   }
 
-  public static AX25Call create(String call, int ssid, int rr, boolean cFlag, boolean last) {
-    return new AX25Call(call, ssid, rr, cFlag, last);
+  /**
+   * Read the next 7 bytes of the buffer as an address, ignoring the flags. This returns a shared instance if
+   * we've seen this station recently. Use {@link SSIDFlags#of(byte)} on the last byte read to get the flags.
+   */
+  public static AX25Call read(ByteBuffer buffer) {
+    long raw = 0;
+    for(int i=0; i<7; i++) {
+      raw = (raw << 8) | (buffer.get() & 0xFF);
+    }
+    return fromRaw(raw & ~0xFFL | (raw & SSID_MASK));
+  }
+
+  /**
+   * Look up the canonical instance for the given 7 address bytes. The cache is direct mapped, a collision
+   * just replaces the older entry. Since instances are immutable it's fine for threads to race on a slot.
+   */
+  private static AX25Call fromRaw(long raw) {
+    int slot = (int) ((raw * 0x9E3779B97F4A7C15L) >>> 54) & (CACHE_SIZE - 1);
+    AX25Call cached = CACHE[slot];
+    if (cached != null && cached.raw == raw) {
+      return cached;
+    }
+    AX25Call call = decode(raw);
+    CACHE[slot] = call;
+    return call;
   }
 
-  public static AX25Call read(ByteBuffer buffer) {
-    StringBuilder call = new StringBuilder();
+  private static AX25Call decode(long raw) {
+    StringBuilder call = new StringBuilder(6);
     for(int i=0; i<6; i++) {
-      char c = (char)((buffer.get() & 0xFF) >> 1);
+      char c = (char)(((raw >>> (8 * (6 - i))) & 0xFF) >> 1);
       if(c != ' ') {
         call.append(c);
       }
     }
-
-    byte ssidByte = buffer.get();
-    int ssid = (ssidByte & 0x1E) >> 1;
-    int rr = (ssidByte & 0x60) >> 5;
-    boolean cFlag = (ssidByte & 0x80) != 0;
-    boolean last = (ssidByte & 0x01) != 0;
-    return new AX25Call(call.toString(), ssid, rr, cFlag, last);
+    int ssid = (int) ((raw & SSID_MASK) >> 1);
+    return new AX25Call(call.toString(), ssid);
   }
 
   public void write(ByteConsumer byteConsumer) {
+    write(byteConsumer, SSIDFlags.NONE);
+  }
+
+  /**
+   * Write out this address with the given {@link SSIDFlags}
+   */
+  public void write(ByteConsumer byteConsumer, int flags) {
     for(int i=0; i<6; i++) {
-      final char c;
-      if(i > call.length() - 1) {
-        c = ' ';
-      } else {
-        c = call.charAt(i);
-      }
-      byteConsumer.accept((byte)((c & 0xFF) << 1));
+      byteConsumer.accept((byte) (raw >>> (8 * (6 - i))));
     }
-    byte ssidByte = (byte)((ssid << 1 & 0x1E) | (last ? 1 : 0));
-    ssidByte |= (byte)(cFlag ? 0x80 : 0x00);
-    ssidByte |= (byte)((rr << 5) & 0x60);
-    byteConsumer.accept(ssidByte);
+    byteConsumer.accept((byte) ((raw & SSID_MASK) | (flags & SSIDFlags.MASK)));
   }
 
   public String getCall() {
@@ -94,39 +142,9 @@ public class AX25Call {
     return ssid;
   }
 
-  public int getRR() {
-    return rr;
-  }
-
-  public boolean isCommandFlagSet() {
-    return cFlag;
-  }
-
-  public boolean isLast() {
-    return last;
-  }
-
-  public void clearFlags() {
-    this.rr = 0;
-    this.cFlag = false;
-    this.last = false;
-  }
-
-  public void setRR(int rr) {
-    this.rr = rr;
-  }
-
-  public void setCommandFlag(boolean cFlag) {
-    this.cFlag = cFlag;
-  }
-
-  public void setLast(boolean last) {
-    this.last = last;
-  }
-
   @Override
   public String toString() {
-    return String.format("%s-%d", call, ssid);
+    return call + "-" + ssid;
   }
 
   public String toAnsi(Ansi ansi) {
@@ -142,11 +160,11 @@ public class AX25Call {
       return false;
     }
     AX25Call ax25Call = (AX25Call) o;
-    return ssid == ax25Call.ssid && getCall().equalsIgnoreCase(ax25Call.getCall());
+    return raw == ax25Call.raw;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(getCall(), ssid);
+    return hash;
   }
 }
@@ -24,9 +24,30 @@ public interface AX25Packet extends Packet {
             " Port=" + port;
   }
 
+  /**
+   * @return the {@link SSIDFlags} of the destination address in this frame
+   */
+  default int getDestFlags() {
+    return SSIDFlags.of(getPayload()[6]);
+  }
+
+  /**
+   * @return the {@link SSIDFlags} of the source address in this frame
+   */
+  default int getSourceFlags() {
+    return SSIDFlags.of(getPayload()[13]);
+  }
+
+  /**
+   * @return the {@link SSIDFlags} of the given repeater address in this frame
+   */
+  default int getRepeaterFlags(int idx) {
+    return SSIDFlags.of(getPayload()[20 + 7 * idx]);
+  }
+
   default Command getCommand() {
-    boolean destC = getDestCall().isCommandFlagSet();
-    boolean sourceC = getSourceCall().isCommandFlagSet();
+    boolean destC = SSIDFlags.isCommandFlagSet(getDestFlags());
+    boolean sourceC = SSIDFlags.isCommandFlagSet(getSourceFlags());
     if(destC) {
       if(sourceC) {
         return Command.LEGACY;
@@ -54,7 +75,8 @@ public interface AX25Packet extends Packet {
     enum ControlType {
       RR(0x01),
       RNR(0x05),
-      REJ(0x09);
+      REJ(0x09),
+      SREJ(0x0D);
 
       private final byte nibble;
 
@@ -66,9 +88,16 @@ public interface AX25Packet extends Packet {
         return (byte) (nibble | (isPollOrFinal ? 0x10 : 0x00) | ((nr << 5) & 0xE0));
       }
 
+      /**
+       * First byte of a modulo 128 control field. N(R) and P/F go in the second byte.
+       */
+      byte asExtendedByte() {
+        return nibble;
+      }
+
       static ControlType fromControlByte(byte ctl) {
         for(ControlType type: ControlType.values()) {
-          if((ctl & type.nibble) == type.nibble) {
+          if((ctl & 0x0F) == type.nibble) {
             return type;
           }
         }
@@ -83,6 +112,7 @@ public interface AX25Packet extends Packet {
 
     enum ControlType {
       SABM(0x2F), // Set Asynchronous Balanced Mode
+      SABME(0x6F), // Set Asynchronous Balanced Mode Extended (modulo 128)
       DISC(0x43), // Disconnect
       DM(0x0F),   // Disconnected Mode
       UA(0x63),   // Unnumbered Acknowledge
@@ -141,19 +171,19 @@ public interface AX25Packet extends Packet {
     COMMAND,
     RESPONSE;
 
-    void updateCalls(AX25Call dest, AX25Call source) {
-      switch(this) {
-        case LEGACY:
-          break;
-        case COMMAND:
-          dest.setCommandFlag(true);
-          source.setCommandFlag(false);
-          break;
-        case RESPONSE:
-          dest.setCommandFlag(false);
-          source.setCommandFlag(true);
-          break;
-      }
+    /**
+     * @return the {@link SSIDFlags} for the destination address of this kind of frame
+     */
+    int destFlags() {
+      return this.equals(COMMAND) ? SSIDFlags.C : SSIDFlags.NONE;
+    }
+
+    /**
+     * @return the {@link SSIDFlags} for the source address of this kind of frame. Since we don't send repeater
+     * paths, the source is always the last address.
+     */
+    int sourceFlags() {
+      return (this.equals(RESPONSE) ? SSIDFlags.C : SSIDFlags.NONE) | SSIDFlags.LAST;
     }
   }
 
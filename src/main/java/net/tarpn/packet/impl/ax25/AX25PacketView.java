@@ -0,0 +1,217 @@
+package net.tarpn.packet.impl.ax25;
+
+import net.tarpn.packet.impl.AX25PacketReader;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A lightweight {@link AX25Packet} over the raw bytes of a frame. Nothing is decoded until it is asked for,
+ * so checking who a frame is for only costs reading the 7 byte destination. The info field is available as a
+ * {@link ByteBuffer} slice of the original bytes.
+ *
+ * The bytes can be a {@link ByteBuffer} over memory owned by someone else (like a pooled buffer), in which
+ * case nothing is copied until {@link #getPayload()} or {@link #decode()} is called.
+ *
+ * Use {@link #decode()} to get the full {@link IFrame}, {@link SFrame}, {@link UFrame} or {@link UIFrame}
+ * once we know we want the frame.
+ *
+ * The PID and info accessors assume a one byte control field. That always holds for UI frames, but I frames on
+ * a modulo 128 link need to be decoded with {@link #decode(boolean)}.
+ *
+ * The bytes are assumed to hold complete address fields and a control byte, callers should check this
+ * first (see AX25PacketDecoder).
+ */
+public class AX25PacketView implements AX25Packet, AX25Packet.HasInfo {
+
+  private final ByteBuffer packet;
+
+  private byte[] payload;
+
+  private AX25Call destination;
+  private AX25Call source;
+  private List<AX25Call> paths;
+
+  /**
+   * Offset of the control byte, or -1 if we haven't found the end of the address fields yet
+   */
+  private int controlIdx = -1;
+
+  public AX25PacketView(byte[] packet) {
+    this(ByteBuffer.wrap(packet));
+    this.payload = packet;
+  }
+
+  /**
+   * @param packet the frame's bytes, from its position to its limit
+   */
+  public AX25PacketView(ByteBuffer packet) {
+    this.packet = packet.slice();
+  }
+
+  /**
+   * @return the frame's bytes. If this view is over a buffer, they're copied out the first time.
+   */
+  @Override
+  public byte[] getPayload() {
+    if (payload == null) {
+      payload = new byte[packet.remaining()];
+      packet.duplicate().get(payload);
+    }
+    return payload;
+  }
+
+  @Override
+  public int getDestFlags() {
+    return SSIDFlags.of(packet.get(6));
+  }
+
+  @Override
+  public int getSourceFlags() {
+    return SSIDFlags.of(packet.get(13));
+  }
+
+  @Override
+  public int getRepeaterFlags(int idx) {
+    return SSIDFlags.of(packet.get(20 + 7 * idx));
+  }
+
+  @Override
+  public AX25Call getDestCall() {
+    if (destination == null) {
+      destination = AX25Call.read(slice(0, 7));
+    }
+    return destination;
+  }
+
+  @Override
+  public AX25Call getSourceCall() {
+    if (source == null) {
+      source = AX25Call.read(slice(7, 7));
+    }
+    return source;
+  }
+
+  @Override
+  public List<AX25Call> getRepeaterPaths() {
+    if (paths == null) {
+      int numPaths = (controlIndex() - 14) / 7;
+      if (numPaths == 0) {
+        paths = Collections.emptyList();
+      } else {
+        ByteBuffer buffer = slice(14, numPaths * 7);
+        paths = new ArrayList<>(numPaths);
+        for (int i = 0; i < numPaths; i++) {
+          paths.add(AX25Call.read(buffer));
+        }
+      }
+    }
+    return paths;
+  }
+
+  @Override
+  public byte getControlByte() {
+    return packet.get(controlIndex());
+  }
+
+  @Override
+  public FrameType getFrameType() {
+    byte control = getControlByte();
+    if ((control & 0x01) == 0) {
+      return FrameType.I;
+    } else if ((control & 0x03) == 0x03) {
+      if ((control & ~0x10) == UnnumberedFrame.ControlType.UI.asByte(false)) {
+        return FrameType.UI;
+      } else {
+        return FrameType.U;
+      }
+    } else {
+      return FrameType.S;
+    }
+  }
+
+  /**
+   * @return true if this frame type carries a PID and info field
+   */
+  public boolean hasInfo() {
+    FrameType frameType = getFrameType();
+    return frameType.equals(FrameType.I) || frameType.equals(FrameType.UI);
+  }
+
+  @Override
+  public byte getProtocolByte() {
+    if (!hasInfo()) {
+      throw new IllegalStateException("No PID in a " + getFrameType() + " frame");
+    }
+    return packet.get(controlIndex() + 1);
+  }
+
+  @Override
+  public Protocol getProtocol() {
+    return Protocol.valueOf(getProtocolByte());
+  }
+
+  /**
+   * @return a read-only view of the info field, without copying it
+   */
+  public ByteBuffer getInfoSlice() {
+    if (!hasInfo()) {
+      throw new IllegalStateException("No info in a " + getFrameType() + " frame");
+    }
+    int infoIdx = controlIndex() + 2;
+    return slice(infoIdx, packet.limit() - infoIdx).slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public byte[] getInfo() {
+    ByteBuffer slice = getInfoSlice();
+    byte[] info = new byte[slice.remaining()];
+    slice.get(info);
+    return info;
+  }
+
+  /**
+   * Fully parse this frame
+   */
+  public AX25Packet decode() {
+    return AX25PacketReader.parse(getPayload());
+  }
+
+  /**
+   * Fully parse this frame
+   *
+   * @param extended true if I and S frames on this link have a modulo 128 control field
+   */
+  public AX25Packet decode(boolean extended) {
+    return AX25PacketReader.parse(getPayload(), extended);
+  }
+
+  private int controlIndex() {
+    if (controlIdx == -1) {
+      int idx = 13;
+      while (!SSIDFlags.isLast(SSIDFlags.of(packet.get(idx)))) {
+        idx += 7;
+      }
+      controlIdx = idx + 1;
+    }
+    return controlIdx;
+  }
+
+  private ByteBuffer slice(int offset, int length) {
+    ByteBuffer slice = packet.duplicate();
+    slice.position(offset);
+    slice.limit(offset + length);
+    return slice;
+  }
+
+  @Override
+  public String toString() {
+    return "AX25PacketView{" +
+        "source=" + getSource() +
+        ", dest=" + getDestination() +
+        ", frameType=" + getFrameType() +
+        '}';
+  }
+}
@@ -1,15 +1,15 @@
 package net.tarpn.packet.impl.ax25;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import net.tarpn.config.PortConfig;
 import net.tarpn.config.impl.PortConfigImpl;
 import net.tarpn.datalink.DataLinkPrimitive;
-import net.tarpn.packet.impl.ax25.AX25Packet.Command;
 import net.tarpn.packet.impl.ax25.AX25Packet.HasInfo;
-import net.tarpn.packet.impl.ax25.AX25Packet.SupervisoryFrame;
 import net.tarpn.util.Timer;
+import net.tarpn.util.TimerWheel;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,10 +28,32 @@ public class AX25State {
 
   public static final int DEFAULT_T1_TIMEOUT_MS = 4000;
 
+  public static final int DEFAULT_T2_TIMEOUT_MS = 30;
+
   public static final int DEFAULT_T3_TIMEOUT_MS = 180000; // 3 minutes
 
   public static final int DEFAULT_RTT_MS = 1000;
 
+  public static final int DEFAULT_MIN_T1_MS = 500;
+
+  public static final int DEFAULT_MAX_T1_MS = 60000;
+
+  /**
+   * T1 is SRT plus this many RTTVAR
+   */
+  public static final int RTT_VARIANCE_FACTOR = 4;
+
+  public static final int DEFAULT_WINDOW_SIZE = 7;
+
+  public static final int MODULUS = 8;
+
+  public static final int EXTENDED_MODULUS = 128;
+
+  /**
+   * Default for how many I frames (queued plus unacknowledged) a session can hold
+   */
+  public static final int DEFAULT_QUEUE_FRAMES = 64;
+
   private final String sessionId;
 
   private final AX25Call remoteNodeCall;
@@ -42,7 +64,7 @@ public class AX25State {
 
   private State currentState;
 
-  private final Queue<HasInfo> pendingInfoFrames;
+  private final Deque<HasInfo> pendingInfoFrames;
 
   private final Consumer<AX25StateEvent> internalEvents;
 
@@ -67,6 +89,13 @@ public class AX25State {
 
   private final Timer t3Timer;
 
+  /**
+   * Delayed ack timer, see {@link #enqueueInfoAck()}
+   */
+  private final Timer t2Timer;
+
+  private final TimerWheel timerWheel;
+
   /**
    * Retry counter
    */
@@ -77,16 +106,55 @@ public class AX25State {
    */
   private int SRT;
 
+  /**
+   * Round trip time variation
+   */
+  private int RTTVAR;
+
+  /**
+   * False until we've timed our first round trip on this link
+   */
+  private boolean rttSampled = false;
+
+  /**
+   * When each outstanding I frame was sent (in {@link System#nanoTime()}), by N(S). Zero if the frame has
+   * been sent more than once or we can't otherwise tell which transmission an ack is for.
+   */
+  private final long[] sentAt = new long[EXTENDED_MODULUS];
+
   private boolean ackPending = false;
 
   private boolean rejectException = false;
 
+  /**
+   * False once the send queue has filled up, until it drains to half full
+   */
+  private boolean writable = true;
+
+  /**
+   * True if this link uses modulo 128 sequence numbers (set up with SABME)
+   */
+  private boolean extended = false;
+
   public AX25State(
       String sessionId,
       AX25Call remoteNodeCall,
       AX25Call localNodeCall,
       PortConfig portConfig,
       Consumer<AX25StateEvent> stateEventConsumer) {
+    this(sessionId, remoteNodeCall, localNodeCall, portConfig, stateEventConsumer, TimerWheel.getDefault());
+  }
+
+  /**
+   * @param timerWheel where this session's timers live. Timer callbacks run on the wheel's executor.
+   */
+  public AX25State(
+      String sessionId,
+      AX25Call remoteNodeCall,
+      AX25Call localNodeCall,
+      PortConfig portConfig,
+      Consumer<AX25StateEvent> stateEventConsumer,
+      TimerWheel timerWheel) {
     this.sessionId = sessionId;
     this.remoteNodeCall = remoteNodeCall;
     this.localNodeCall = localNodeCall;
@@ -94,24 +162,35 @@ public class AX25State {
     this.internalEvents = stateEventConsumer;
     this.outgoingEvents = new ArrayDeque<>();
     this.currentState = State.DISCONNECTED;
-    this.pendingInfoFrames = new LinkedList<>();
+    this.pendingInfoFrames = new ArrayDeque<>();
+    this.timerWheel = timerWheel;
 
-    this.t1Timer = Timer.create(portConfig.getInt("l2.retry.timeout", DEFAULT_T1_TIMEOUT_MS), () -> {
+    this.t1Timer = Timer.create(timerWheel, portConfig.getInt("l2.retry.timeout", DEFAULT_T1_TIMEOUT_MS), () -> {
       LOG.debug("T1 expired for " + this);
       this.internalEvents.accept(AX25StateEvent.createT1ExpireEvent(remoteNodeCall));
     });
 
-    this.t3Timer = Timer.create(portConfig.getInt("l2.idle.timeout", DEFAULT_T3_TIMEOUT_MS), () -> {
+    this.t3Timer = Timer.create(timerWheel, portConfig.getInt("l2.idle.timeout", DEFAULT_T3_TIMEOUT_MS), () -> {
       LOG.debug("T3 expired for " + this);
       this.internalEvents.accept(AX25StateEvent.createT3ExpireEvent(remoteNodeCall));
     });
 
-    this.SRT = portConfig.getInt("l2.rtt", DEFAULT_RTT_MS);
+    this.t2Timer = Timer.create(timerWheel, portConfig.getInt("l2.ack.delay", DEFAULT_T2_TIMEOUT_MS), () -> {
+      this.internalEvents.accept(AX25StateEvent.createT2ExpireEvent(remoteNodeCall));
+    });
+
+    resetSRT();
   }
 
+  /**
+   * Queue up data to be sent. Once the queue reaches {@link #getQueueCapacity()}, a DL_FLOW_OFF goes up to
+   * layer 3, and a DL_FLOW_ON once it has drained to half. This is only a request to back off, data pushed
+   * past the limit is still queued and sent.
+   */
   public void pushIFrame(HasInfo iFrameData) {
     pendingInfoFrames.add(iFrameData);
     internalEvents.accept(AX25StateEvent.createIFrameQueueEvent(remoteNodeCall));
+    updateWritability();
   }
 
   public HasInfo popIFrame() {
@@ -120,6 +199,46 @@ public class AX25State {
 
   public void clearIFrames() {
     pendingInfoFrames.clear();
+    updateWritability();
+  }
+
+  /**
+   * Kick the state machine if there's anything waiting to be sent, like after V(A) moves and opens the window
+   */
+  public void resumeIFrames() {
+    if (!pendingInfoFrames.isEmpty()) {
+      internalEvents.accept(AX25StateEvent.createIFrameQueueEvent(remoteNodeCall));
+    }
+  }
+
+  /**
+   * How many I frames this session holds, either waiting to be sent or sent and not acknowledged yet, before
+   * asking layer 3 to stop writing. This is "l2.queue.frames", but at least the window size.
+   */
+  public int getQueueCapacity() {
+    return Math.max(portConfig.getInt("l2.queue.frames", DEFAULT_QUEUE_FRAMES), getWindowSize());
+  }
+
+  /**
+   * Frames waiting to be sent plus frames sent and not acknowledged
+   */
+  public int getBufferedFrames() {
+    return pendingInfoFrames.size() + Math.floorMod(vs.get() - va.get(), getModulus());
+  }
+
+  public boolean isWritable() {
+    return writable;
+  }
+
+  private void updateWritability() {
+    int buffered = getBufferedFrames();
+    if (writable && buffered >= getQueueCapacity()) {
+      writable = false;
+      sendDataLinkPrimitive(DataLinkPrimitive.newFlowOffIndication(remoteNodeCall, localNodeCall));
+    } else if (!writable && buffered <= getQueueCapacity() / 2) {
+      writable = true;
+      sendDataLinkPrimitive(DataLinkPrimitive.newFlowOnIndication(remoteNodeCall, localNodeCall));
+    }
   }
 
   public Collection<HasInfo> peekIFrames() {
@@ -134,8 +253,12 @@ public class AX25State {
     internalEvents.accept(stateEvent);
   }
 
+  /**
+   * Called whenever we send a frame carrying N(R), which acks everything up to V(R)
+   */
   public void clearAckPending() {
     ackPending = false;
+    t2Timer.cancel();
   }
 
   public AX25Call getRemoteNodeCall() {
@@ -154,26 +277,21 @@ public class AX25State {
     return t3Timer;
   }
 
-  private Timer ackTimer = null;
-
-  public void enqueueInfoAck(Consumer<AX25Packet> outgoingPackets) {
-    if(ackTimer == null) {
-      ackTimer = Timer.create(portConfig.getInt("l2.ack.delay", 30), () -> {
-        if(ackPending) {
-          SFrame rr = SFrame.create(
-              getRemoteNodeCall(),
-              getLocalNodeCall(),
-              Command.RESPONSE,
-              SupervisoryFrame.ControlType.RR,
-              getReceiveState(),
-              true);
-          outgoingPackets.accept(rr);
-          clearAckPending();
-        }
-      });
-    }
-    ackTimer.start();
+  /**
+   * Note that we owe the remote an ack for V(R). Rather than sending an RR right away, we wait up to
+   * "l2.ack.delay" (T2) so the ack can ride along as the N(R) of an I frame we send in the meantime. If
+   * nothing goes out first, T2 expiring sends a standalone RR. The delay runs from the first unacked frame
+   * and isn't pushed back by later ones.
+   */
+  public void enqueueInfoAck() {
     ackPending = true;
+    if(!t2Timer.isRunning()) {
+      t2Timer.start();
+    }
+  }
+
+  public boolean isAckPending() {
+    return ackPending;
   }
 
   public int getRC() {
@@ -210,8 +328,41 @@ public class AX25State {
     this.SRT = srt;
   }
 
+  public int getRTTVAR() {
+    return RTTVAR;
+  }
+
   public void resetSRT() {
     SRT = portConfig.getInt("l2.rtt", DEFAULT_RTT_MS);
+    RTTVAR = SRT / 2;
+    rttSampled = false;
+  }
+
+  /**
+   * Update SRT and RTTVAR with a measured round trip (as in RFC 6298)
+   */
+  public void sampleRTT(int rtt) {
+    if (!rttSampled) {
+      SRT = rtt;
+      RTTVAR = rtt / 2;
+      rttSampled = true;
+    } else {
+      RTTVAR = (3 * RTTVAR + Math.abs(SRT - rtt)) / 4;
+      SRT = (7 * SRT + rtt) / 8;
+    }
+  }
+
+  /**
+   * T1 is SRT + max(G, 4 * RTTVAR), doubled for each retry, and kept between "l2.retry.timeout.min" and
+   * "l2.retry.timeout.max". G is the timer wheel's tick, so T1 stays above SRT once RTTVAR has decayed
+   * to nothing on a steady link.
+   */
+  public int computeT1() {
+    long t1 = (long) SRT + Math.max(timerWheel.getTickMillis(), (long) RTT_VARIANCE_FACTOR * RTTVAR);
+    t1 <<= Math.min(RC, 16);
+    int min = portConfig.getInt("l2.retry.timeout.min", DEFAULT_MIN_T1_MS);
+    int max = portConfig.getInt("l2.retry.timeout.max", DEFAULT_MAX_T1_MS);
+    return (int) Math.max(min, Math.min(max, t1));
   }
 
   public String getSessionId() {
@@ -230,20 +381,119 @@ public class AX25State {
     return vs.get();
   }
 
+  /**
+   * Whether we should ask for modulo 128 (SABME) when setting up a link, and accept it from the remote
+   */
+  public boolean isExtendedAllowed() {
+    return portConfig.getBoolean("l2.extended", false);
+  }
+
+  public boolean isExtended() {
+    return extended;
+  }
+
+  public void setExtended(boolean extended) {
+    this.extended = extended;
+  }
+
+  public int getModulus() {
+    return extended ? EXTENDED_MODULUS : MODULUS;
+  }
+
+  /**
+   * The window size k, the most I frames we'll have outstanding. This is "l2.window" but at most 7 for a
+   * modulo 8 link, or 127 for a modulo 128 link.
+   */
+  public int getWindowSize() {
+    int k = portConfig.getInt("l2.window", DEFAULT_WINDOW_SIZE);
+    return Math.max(1, Math.min(k, getModulus() - 1));
+  }
+
+  /**
+   * Whether to use SREJ to ask for just the frames we missed. This needs AX.25 2.2, so only on extended links.
+   */
+  public boolean isSelectiveRejectEnabled() {
+    return extended && portConfig.getBoolean("l2.srej", true);
+  }
+
+  IFrame[] oldFrames = new IFrame[EXTENDED_MODULUS];
+
+  /**
+   * I frames received ahead of V(R), by N(S), waiting for the missing ones to arrive
+   */
+  private final IFrame[] reorderBuffer = new IFrame[EXTENDED_MODULUS];
+
+  /**
+   * Sequence numbers we've sent an SREJ for and are still waiting on
+   */
+  private final boolean[] selectiveRejectSent = new boolean[EXTENDED_MODULUS];
+
+  public void bufferOutOfOrderIFrame(IFrame iFrame) {
+    reorderBuffer[iFrame.getSendSequenceNumber() % getModulus()] = iFrame;
+  }
+
+  public boolean hasBufferedIFrame(int ns) {
+    return reorderBuffer[ns % getModulus()] != null;
+  }
 
-  IFrame[] oldFrames = new IFrame[8];
+  /**
+   * Take the buffered I frame with N(S) equal to V(R), if we have it
+   */
+  public IFrame pollBufferedIFrame() {
+    int idx = getReceiveStateByte();
+    IFrame iFrame = reorderBuffer[idx];
+    reorderBuffer[idx] = null;
+    return iFrame;
+  }
+
+  /**
+   * Record that we asked for a frame with SREJ
+   * @return false if we've already asked for it
+   */
+  public boolean markSelectiveReject(int ns) {
+    int idx = ns % getModulus();
+    if (selectiveRejectSent[idx]) {
+      return false;
+    }
+    selectiveRejectSent[idx] = true;
+    return true;
+  }
 
   public void storeSentIFrame(IFrame iFrame) {
-    // Guard against array index?
-    oldFrames[iFrame.getSendSequenceNumber()] = iFrame;
+    storeSentIFrame(iFrame, false);
+  }
+
+  /**
+   * @param retransmission true if this N(S) has been sent before. By Karn's rule, it won't be timed.
+   */
+  public void storeSentIFrame(IFrame iFrame, boolean retransmission) {
+    int idx = iFrame.getSendSequenceNumber() % getModulus();
+    oldFrames[idx] = iFrame;
+    sentAt[idx] = retransmission ? 0 : System.nanoTime();
+  }
+
+  /**
+   * We polled after T1 expired, so an ack for anything outstanding could be answering the poll rather than
+   * the frame. Don't time any of them.
+   */
+  public void clearRTTSamples() {
+    Arrays.fill(sentAt, 0);
   }
 
   public IFrame getSentIFrame(int ns) {
-    return oldFrames[ns];
+    return oldFrames[ns % getModulus()];
+  }
+
+  /**
+   * Put a sent I frame back at the front of the queue to be sent again
+   */
+  public void requeueIFrame(HasInfo iFrameData) {
+    pendingInfoFrames.addFirst(iFrameData);
+    internalEvents.accept(AX25StateEvent.createIFrameQueueEvent(remoteNodeCall));
   }
 
   public Byte getSendStateByte() {
-    return (byte)(vs.get() % 8);
+    return (byte)(vs.get() % getModulus());
   }
 
   public void incrementSendState() {
@@ -259,10 +509,12 @@ public class AX25State {
   }
 
   public Byte getReceiveStateByte() {
-    return (byte)(vr.get() % 8);
+    return (byte)(vr.get() % getModulus());
   }
 
   public void incrementReceiveState() {
+    // Whatever we had outstanding for this sequence number has now arrived
+    selectiveRejectSent[getReceiveStateByte()] = false;
     this.vr.incrementAndGet();
   }
 
@@ -279,19 +531,43 @@ public class AX25State {
   }
 
   public void setAcknowledgeState(byte va) {
-    this.va.set(va & 0xff);
+    int newVa = va & 0xff;
+    int oldVa = this.va.getAndSet(newVa);
+    if (newVa != oldVa) {
+      // Time the most recent frame this acks
+      int modulus = getModulus();
+      long sent = sentAt[Math.floorMod(newVa - 1, modulus)];
+      if (sent != 0) {
+        sampleRTT((int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent));
+      }
+      int acked = Math.floorMod(newVa - oldVa, modulus);
+      for (int i = 0; i < acked; i++) {
+        sentAt[(oldVa + i) % modulus] = 0;
+      }
+      // The window has opened up
+      updateWritability();
+      resumeIFrames();
+    }
   }
 
   /**
-   * If V(S) is equal to V(A) + window size (7) means we can't transmit any more until we get an ACK
+   * If V(S) is equal to V(A) + window size (k) means we can't transmit any more until we get an ACK
    * @return
    */
   public boolean windowExceeded() {
-    return (vs.get() % 8) == ((va.get() + 7) % 8);
+    return Math.floorMod(vs.get() - va.get(), getModulus()) >= getWindowSize();
   }
 
   public boolean checkSendEqAckSeq() {
-    return (vs.get() % 8) == va.get();
+    return (vs.get() % getModulus()) == va.get();
+  }
+
+  /**
+   * Check V(A) &lt;= N(R) &lt;= V(S), allowing for the sequence numbers wrapping around
+   */
+  public boolean isValidNR(int nr) {
+    int modulus = getModulus();
+    return Math.floorMod(nr - va.get(), modulus) <= Math.floorMod(vs.get() - va.get(), modulus);
   }
 
   public boolean isRejectException() {
@@ -308,7 +584,7 @@ public class AX25State {
 
   public void clearExceptions() {
     rejectException = false;
-    ackPending = false;
+    clearAckPending();
   }
 
   public void reset() {
@@ -317,8 +593,13 @@ public class AX25State {
     vr.set(0);
     va.set(0);
     RC = 0;
+    Arrays.fill(reorderBuffer, null);
+    Arrays.fill(selectiveRejectSent, false);
+    Arrays.fill(sentAt, 0);
     t1Timer.cancel();
     t3Timer.cancel();
+    clearAckPending();
+    updateWritability();
   }
 
   public DataLinkPrimitive pollDLEvents() {
@@ -337,7 +618,9 @@ public class AX25State {
             ", V(r)=" + getReceiveState() +
             ", N(r)=" + (getReceiveStateByte() & 0xff) +
             ", V(a)=" + getAcknowledgeState() +
+            ", mod=" + getModulus() +
             ", SRT=" + getSRT() +
+            ", RTTVAR=" + getRTTVAR() +
             ", T1=" + getT1Timer().timeRemaining() + "/" + getT1Timer().getTimeout() +
             ", T3=" + getT3Timer().timeRemaining() + "/" + getT3Timer().getTimeout() +
             '}';
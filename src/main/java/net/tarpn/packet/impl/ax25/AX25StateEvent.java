@@ -39,6 +39,10 @@ public class AX25StateEvent {
     return new AX25StateEvent(retryConnectTo, DummyAX25Packet.empty(), Type.T1_EXPIRE);
   }
 
+  public static AX25StateEvent createT2ExpireEvent(AX25Call ackTo) {
+    return new AX25StateEvent(ackTo, DummyAX25Packet.empty(), Type.T2_EXPIRE);
+  }
+
   public static AX25StateEvent createT3ExpireEvent(AX25Call retryConnectTo) {
     return new AX25StateEvent(retryConnectTo, DummyAX25Packet.empty(), Type.T3_EXPIRE);
   }
@@ -89,6 +93,7 @@ public class AX25StateEvent {
     AX25_SREJ,
     AX25_REJ,
     T1_EXPIRE,
+    T2_EXPIRE,
     T3_EXPIRE,
     DL_CONNECT,
     DL_DISCONNECT,
@@ -2,6 +2,7 @@ package net.tarpn.packet.impl.ax25;
 
 import org.fusesource.jansi.Ansi;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public abstract class BaseAX25Packet implements AX25Packet {
@@ -19,6 +20,19 @@ public abstract class BaseAX25Packet implements AX25Packet {
     this.control = control;
   }
 
+  /**
+   * Allocate a buffer of exactly the right size for a packet without repeaters, and write the addresses
+   * into it with the flags for the given command.
+   *
+   * @param length the number of bytes which follow the addresses
+   */
+  static ByteBuffer allocate(AX25Call destination, AX25Call source, Command command, int length) {
+    ByteBuffer buffer = ByteBuffer.allocate(14 + length);
+    destination.write(buffer::put, command.destFlags());
+    source.write(buffer::put, command.sourceFlags());
+    return buffer;
+  }
+
   @Override
   public byte[] getPayload() {
     return packet;
@@ -13,6 +13,7 @@ public class IFrame extends BaseAX25Packet implements AX25Packet.InformationFram
   private final boolean pollSet;
   private final byte recvSeqNumber;
   private final byte sendSeqNumber;
+  private final boolean extended;
   private final byte[] info;
   private final Protocol protocol;
 
@@ -22,6 +23,21 @@ public class IFrame extends BaseAX25Packet implements AX25Packet.InformationFram
     this.pollSet = (control & 0x10) != 0;
     this.recvSeqNumber = (byte)((control >> 5) & 0x07);
     this.sendSeqNumber = (byte)((control >> 1) & 0x07);
+    this.extended = false;
+    this.info = info;
+    this.protocol = Protocol.valueOf(pid);
+  }
+
+  /**
+   * A modulo 128 I frame. The first control byte has N(S), the second has N(R) and P.
+   */
+  public IFrame(byte[] packet, AX25Call destination, AX25Call source, List<AX25Call> paths,
+      byte control, byte control2, byte[] info, byte pid) {
+    super(packet, destination, source, paths, control);
+    this.pollSet = (control2 & 0x01) != 0;
+    this.recvSeqNumber = (byte)((control2 >> 1) & 0x7F);
+    this.sendSeqNumber = (byte)((control >> 1) & 0x7F);
+    this.extended = true;
     this.info = info;
     this.protocol = Protocol.valueOf(pid);
   }
@@ -35,29 +51,45 @@ public class IFrame extends BaseAX25Packet implements AX25Packet.InformationFram
       boolean pollFinalSet,
       Protocol protocol,
       byte[] info) {
-    ByteBuffer buffer = ByteBuffer.allocate(1024);
-
-    // Update flags in SSID
-    destCall.clearFlags();
-    sourceCall.clearFlags();
-    sourceCall.setLast(true);
-    command.updateCalls(destCall, sourceCall);
+    return create(destCall, sourceCall, command, sendSeqNumber, recvSeqNumber, pollFinalSet, protocol, info, false);
+  }
 
-    // Write out calls
-    destCall.write(buffer::put);
-    sourceCall.write(buffer::put);
+  public static IFrame create(
+      AX25Call destCall,
+      AX25Call sourceCall,
+      Command command,
+      byte sendSeqNumber,
+      byte recvSeqNumber,
+      boolean pollFinalSet,
+      Protocol protocol,
+      byte[] info,
+      boolean extended) {
+    ByteBuffer buffer = allocate(destCall, sourceCall, command, (extended ? 3 : 2) + info.length);
 
     // TODO repeater paths
+    if (extended) {
+      byte controlByte = (byte)((sendSeqNumber << 1) & 0xFE);
+      byte controlByte2 = (byte)(((recvSeqNumber << 1) & 0xFE) | (pollFinalSet ? 0x01 : 0x00));
+      buffer.put(controlByte);
+      buffer.put(controlByte2);
+      buffer.put(protocol.asByte());
+      buffer.put(info);
+      return new IFrame(buffer.array(), destCall, sourceCall, Collections.emptyList(), controlByte, controlByte2,
+          info, protocol.asByte());
+    }
     byte controlByte = (byte)(((recvSeqNumber << 5) & 0xE0) | ((sendSeqNumber << 1) & 0x0E));
     controlByte |= (pollFinalSet ? 0x10 : 0x00);
     buffer.put(controlByte);
     buffer.put(protocol.asByte());
     buffer.put(info);
-    int len = buffer.position();
-    byte[] packet = new byte[len];
-    buffer.position(0);
-    buffer.get(packet, 0, len);
-    return new IFrame(packet, destCall, sourceCall, Collections.emptyList(), controlByte, info, protocol.asByte());
+    return new IFrame(buffer.array(), destCall, sourceCall, Collections.emptyList(), controlByte, info, protocol.asByte());
+  }
+
+  /**
+   * @return true if this frame has a modulo 128 control field
+   */
+  public boolean isExtended() {
+    return extended;
   }
 
   @Override
@@ -8,12 +8,25 @@ public class SFrame extends BaseAX25Packet implements AX25Packet.SupervisoryFram
   private final boolean pollFinalSet;
   private final byte recvSeqNumber;
   private final ControlType controlType;
+  private final boolean extended;
 
   public SFrame(byte[] packet, AX25Call destination, AX25Call source, List<AX25Call> paths, byte control, boolean pollFinalSet) {
     super(packet, destination, source, paths, control);
     this.pollFinalSet = pollFinalSet;
     this.recvSeqNumber = (byte)((control & 0xE0) >> 5);
     this.controlType = ControlType.fromControlByte(control);
+    this.extended = false;
+  }
+
+  /**
+   * A modulo 128 S frame. The first control byte has the type, the second has N(R) and P/F.
+   */
+  public SFrame(byte[] packet, AX25Call destination, AX25Call source, List<AX25Call> paths, byte control, byte control2) {
+    super(packet, destination, source, paths, control);
+    this.pollFinalSet = (control2 & 0x01) != 0;
+    this.recvSeqNumber = (byte)((control2 >> 1) & 0x7F);
+    this.controlType = ControlType.fromControlByte(control);
+    this.extended = true;
   }
 
   public static SFrame create(
@@ -23,30 +36,39 @@ public class SFrame extends BaseAX25Packet implements AX25Packet.SupervisoryFram
       SupervisoryFrame.ControlType control,
       int nr,
       boolean pollFinalSet) {
-    ByteBuffer buffer = ByteBuffer.allocate(1024);
-
-    // Update flags in SSID
-    destination.clearFlags();
-    source.clearFlags();
-    source.setLast(true);
-    command.updateCalls(destination, source);
+    return create(destination, source, command, control, nr, pollFinalSet, false);
+  }
 
-    // Write out calls
-    destination.write(buffer::put);
-    source.write(buffer::put);
+  public static SFrame create(
+      AX25Call destination,
+      AX25Call source,
+      Command command,
+      SupervisoryFrame.ControlType control,
+      int nr,
+      boolean pollFinalSet,
+      boolean extended) {
+    ByteBuffer buffer = allocate(destination, source, command, extended ? 2 : 1);
 
     // TODO repeater paths
+    if (extended) {
+      byte controlByte = control.asExtendedByte();
+      byte controlByte2 = (byte)(((nr << 1) & 0xFE) | (pollFinalSet ? 0x01 : 0x00));
+      buffer.put(controlByte);
+      buffer.put(controlByte2);
+      return new SFrame(buffer.array(), destination, source, Collections.emptyList(), controlByte, controlByte2);
+    }
     buffer.put(control.asByte(nr, pollFinalSet));
-
-    int len = buffer.position();
-    byte[] packet = new byte[len];
-    buffer.position(0);
-    buffer.get(packet, 0, len);
-
-    return new SFrame(packet, destination, source, Collections.emptyList(),
+    return new SFrame(buffer.array(), destination, source, Collections.emptyList(),
         control.asByte(nr, pollFinalSet), pollFinalSet);
   }
 
+  /**
+   * @return true if this frame has a modulo 128 control field
+   */
+  public boolean isExtended() {
+    return extended;
+  }
+
   @Override
   public boolean isPollOrFinalSet() {
     return pollFinalSet;
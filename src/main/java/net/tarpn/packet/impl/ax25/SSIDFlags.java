@@ -0,0 +1,47 @@
+package net.tarpn.packet.impl.ax25;
+
+/**
+ * The per-frame bits of an address's SSID byte. These describe how the address is being used in a particular
+ * frame rather than which station it is, so they are kept apart from {@link AX25Call}.
+ *
+ * <pre>
+ *   C/H R R S S S S L
+ * </pre>
+ *
+ * The high bit is the command/response bit for the destination and source, or the has-been-repeated bit
+ * for a repeater. L marks the last address in the header.
+ */
+public final class SSIDFlags {
+
+  public static final int NONE = 0x00;
+  public static final int LAST = 0x01;
+  public static final int RR = 0x60;
+  public static final int C = 0x80;
+  public static final int H = 0x80;
+
+  public static final int MASK = C | RR | LAST;
+
+  private SSIDFlags() {
+
+  }
+
+  public static int of(byte ssidByte) {
+    return ssidByte & MASK;
+  }
+
+  public static boolean isLast(int flags) {
+    return (flags & LAST) != 0;
+  }
+
+  public static boolean isCommandFlagSet(int flags) {
+    return (flags & C) != 0;
+  }
+
+  public static boolean isRepeated(int flags) {
+    return (flags & H) != 0;
+  }
+
+  public static int getRR(int flags) {
+    return (flags & RR) >> 5;
+  }
+}
@@ -21,27 +21,11 @@ public class UFrame extends BaseAX25Packet implements AX25Packet.UnnumberedFrame
       Command command,
       ControlType controlType,
       boolean pollFinalSet) {
-    ByteBuffer buffer = ByteBuffer.allocate(1024);
-
-    // Update flags in SSID
-    destCall.clearFlags();
-    sourceCall.clearFlags();
-    sourceCall.setLast(true);
-    command.updateCalls(destCall, sourceCall);
-
-    // Write out calls
-    destCall.write(buffer::put);
-    sourceCall.write(buffer::put);
+    ByteBuffer buffer = allocate(destCall, sourceCall, command, 1);
 
     // TODO repeater paths
     buffer.put(controlType.asByte(pollFinalSet));
-
-    int len = buffer.position();
-    byte[] packet = new byte[len];
-    buffer.position(0);
-    buffer.get(packet, 0, len);
-
-    return new UFrame(packet, destCall, sourceCall, Collections.emptyList(),
+    return new UFrame(buffer.array(), destCall, sourceCall, Collections.emptyList(),
         controlType.asByte(pollFinalSet), pollFinalSet);
   }
 
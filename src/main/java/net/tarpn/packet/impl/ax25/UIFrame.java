@@ -26,28 +26,13 @@ public class UIFrame extends UFrame implements HasInfo {
       Protocol pid,
       byte[] info) {
     ControlType controlType = ControlType.UI;
-    ByteBuffer buffer = ByteBuffer.allocate(1024);
-
-    // Update flags in SSID
-    destCall.clearFlags();
-    sourceCall.clearFlags();
-    sourceCall.setLast(true);
-    Command.COMMAND.updateCalls(destCall, sourceCall);
-
-    // Write out calls
-    destCall.write(buffer::put);
-    sourceCall.write(buffer::put);
+    ByteBuffer buffer = allocate(destCall, sourceCall, Command.COMMAND, 2 + info.length);
 
     // TODO repeater paths
     buffer.put(controlType.asByte(true));
     buffer.put(pid.asByte());
     buffer.put(info);
-    int len = buffer.position();
-    byte[] packet = new byte[len];
-
-    buffer.position(0);
-    buffer.get(packet, 0, len);
-    return new UIFrame(packet, destCall, sourceCall, Collections.emptyList(),
+    return new UIFrame(buffer.array(), destCall, sourceCall, Collections.emptyList(),
         controlType.asByte(true), true, info, pid.asByte());
   }
 
@@ -6,10 +6,8 @@ import net.tarpn.datalink.DataLinkPrimitive;
 import net.tarpn.util.ByteUtil;
 import net.tarpn.packet.impl.ax25.AX25Packet;
 import net.tarpn.packet.impl.ax25.AX25Packet.Command;
-import net.tarpn.packet.impl.ax25.AX25Packet.HasInfo;
 import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame;
 import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame.ControlType;
-import net.tarpn.util.Timer;
 import net.tarpn.packet.impl.ax25.AX25StateEvent.InternalInfo;
 import net.tarpn.datalink.DataLinkPrimitive.ErrorType;
 import net.tarpn.packet.impl.ax25.UFrame;
@@ -34,11 +32,16 @@ public class AwaitingConnectionStateHandler implements StateHandler {
         newState = State.AWAITING_CONNECTION;
         break;
       }
+      case AX25_SABME: {
+        if(!state.isExtendedAllowed()) {
+          newState = StateHelper.refuseExtended(state, packet, outgoingPackets);
+        } else {
+          newState = simultaneousConnect(state, packet, true, outgoingPackets);
+        }
+        break;
+      }
       case AX25_SABM: {
-        boolean isFinalSet = ((UnnumberedFrame) packet).isPollFinalSet();
-        UFrame ua = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.UA, isFinalSet);
-        outgoingPackets.accept(ua);
-        newState = State.AWAITING_CONNECTION;
+        newState = simultaneousConnect(state, packet, false, outgoingPackets);
         break;
       }
       case AX25_DISC: {
@@ -56,13 +59,7 @@ public class AwaitingConnectionStateHandler implements StateHandler {
         break;
       }
       case IFRAME_READY: {
-        HasInfo pendingIFrame = state.popIFrame();
-        if(pendingIFrame != null) {
-          // one-shot timer to delay the re-sending a bit
-          Timer.create(200, () ->
-              state.pushIFrame(pendingIFrame)
-          ).start();
-        }
+        // Leave it queued until we're connected
         newState = State.AWAITING_CONNECTION;
         break;
       }
@@ -86,7 +83,13 @@ public class AwaitingConnectionStateHandler implements StateHandler {
       }
       case AX25_DM: {
         boolean isFinalSet = ((UnnumberedFrame) packet).isPollFinalSet();
-        if (isFinalSet) {
+        if (isFinalSet && state.isExtended()) {
+          // The remote doesn't do AX.25 2.2, try again with SABM
+          state.setExtended(false);
+          StateHelper.sendSetMode(state, outgoingPackets);
+          state.getT1Timer().start();
+          newState = State.AWAITING_CONNECTION;
+        } else if (isFinalSet) {
           state.clearIFrames();
           state.sendDataLinkPrimitive(DataLinkPrimitive.newDisconnectIndication(state.getRemoteNodeCall(), state.getLocalNodeCall()));
           state.getT1Timer().cancel();
@@ -110,6 +113,7 @@ public class AwaitingConnectionStateHandler implements StateHandler {
           }
           state.reset();
           StateHelper.selectT1Value(state);
+          state.resumeIFrames();
           newState = State.CONNECTED;
         } else {
           state.sendDataLinkPrimitive(DataLinkPrimitive
@@ -118,22 +122,10 @@ public class AwaitingConnectionStateHandler implements StateHandler {
         }
         break;
       }
-      case AX25_SABME: {
-        UFrame ua = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.DM, true);
-        outgoingPackets.accept(ua);
-        // I guess we should disconnect here since we don't support 2.2
-        state.sendDataLinkPrimitive(DataLinkPrimitive.newDisconnectIndication(state.getRemoteNodeCall(), state.getLocalNodeCall()));
-        newState = State.DISCONNECTED;
-        break;
-      }
       case T1_EXPIRE: {
         if(state.checkRC()) {
           state.incrementRC();
-          UFrame sabm = UFrame.create(
-              state.getRemoteNodeCall(),
-              state.getLocalNodeCall(),
-              Command.COMMAND, ControlType.SABM, true);
-          outgoingPackets.accept(sabm);
+          StateHelper.sendSetMode(state, outgoingPackets);
           StateHelper.selectT1Value(state);
           state.getT1Timer().start();
           newState = State.AWAITING_CONNECTION;
@@ -147,8 +139,17 @@ public class AwaitingConnectionStateHandler implements StateHandler {
       }
       case AX25_FRMR: {
         state.resetSRT();
-        state.getT1Timer().setTimeout(state.getSRT() * 2);
-        StateHelper.establishDataLink(state, outgoingPackets);
+        StateHelper.selectT1Value(state);
+        if(state.isExtended()) {
+          // Some 2.0 stations answer SABME with FRMR, fall back to SABM
+          state.setExtended(false);
+          StateHelper.clearExceptionConditions(state);
+          state.resetRC();
+          StateHelper.sendSetMode(state, outgoingPackets);
+          state.getT1Timer().start();
+        } else {
+          StateHelper.establishDataLink(state, outgoingPackets);
+        }
         // TODO set layer 3 initialized
         newState = State.AWAITING_CONNECTION;
         break;
@@ -169,4 +170,19 @@ public class AwaitingConnectionStateHandler implements StateHandler {
     }
     return newState;
   }
+
+  /**
+   * Both ends tried to connect at once, go with whatever mode the remote asked for
+   */
+  private static State simultaneousConnect(
+      AX25State state,
+      AX25Packet packet,
+      boolean extended,
+      Consumer<AX25Packet> outgoingPackets) {
+    boolean isFinalSet = ((UnnumberedFrame) packet).isPollFinalSet();
+    UFrame ua = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.UA, isFinalSet);
+    outgoingPackets.accept(ua);
+    state.setExtended(extended);
+    return State.AWAITING_CONNECTION;
+  }
 }
@@ -119,6 +119,11 @@ public class AwaitingReleaseStateHandler implements StateHandler {
         }
         break;
       }
+      case T2_EXPIRE: {
+        // A delayed ack that was already on its way when we sent DISC, it doesn't matter now
+        newState = State.AWAITING_RELEASE;
+        break;
+      }
       // Other primitives, do nothing, other commands are not specified in the spec
       case AX25_SABME:
       case AX25_UNKNOWN:
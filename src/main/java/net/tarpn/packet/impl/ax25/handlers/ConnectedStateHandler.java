@@ -6,12 +6,10 @@ import net.tarpn.datalink.DataLinkPrimitive;
 import net.tarpn.util.ByteUtil;
 import net.tarpn.packet.impl.ax25.AX25Packet;
 import net.tarpn.packet.impl.ax25.AX25Packet.Command;
-import net.tarpn.packet.impl.ax25.AX25Packet.HasInfo;
 import net.tarpn.packet.impl.ax25.AX25Packet.SupervisoryFrame;
 import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame.ControlType;
 import net.tarpn.packet.impl.ax25.AX25State;
 import net.tarpn.packet.impl.ax25.AX25State.State;
-import net.tarpn.util.Timer;
 import net.tarpn.packet.impl.ax25.AX25StateEvent;
 import net.tarpn.packet.impl.ax25.AX25StateEvent.InternalInfo;
 import net.tarpn.packet.impl.ax25.AX25StateEvent.Type;
@@ -45,6 +43,8 @@ public class ConnectedStateHandler implements StateHandler {
       case DL_DISCONNECT: {
         state.clearIFrames();
         state.resetRC();
+        // The DISC ends the link, there's no point acking anything now
+        state.clearAckPending();
         UFrame disc = UFrame.create(
             state.getRemoteNodeCall(),
             state.getLocalNodeCall(),
@@ -62,36 +62,13 @@ public class ConnectedStateHandler implements StateHandler {
         break;
       }
       case IFRAME_READY: {
-        HasInfo pendingIFrame = state.popIFrame();
-        if(pendingIFrame == null) {
-          newState = State.CONNECTED;
-          break;
-        }
-        if(state.windowExceeded()) {
-          LOG.warn("Cannot send " + pendingIFrame + ". The window is, waiting a bit and retrying. Pending IFrames: " + state.peekIFrames() + ", State: " + state);
-          // one-shot timer to delay the re-sending a bit
-          Timer.create(200, () ->
-              state.pushIFrame(pendingIFrame)
-          ).start();
-        } else {
-          IFrame iFrame = IFrame.create(
-              state.getRemoteNodeCall(),
-              state.getLocalNodeCall(),
-              Command.COMMAND,
-              state.getSendStateByte(),
-              state.getReceiveStateByte(),
-              false,
-              pendingIFrame.getProtocol(),
-              pendingIFrame.getInfo());
-          outgoingPackets.accept(iFrame);
-          state.storeSentIFrame(iFrame);
-          state.incrementSendState();
-          state.clearAckPending();
-          if(!state.getT1Timer().isRunning()) {
-            state.getT3Timer().cancel();
-            state.getT1Timer().start();
-          }
-        }
+        // Send what the window allows, the rest waits in the queue until V(A) moves
+        StateHelper.sendPendingIFrames(state, outgoingPackets);
+        newState = State.CONNECTED;
+        break;
+      }
+      case T2_EXPIRE: {
+        StateHelper.sendDelayedAck(state, outgoingPackets);
         newState = State.CONNECTED;
         break;
       }
@@ -108,6 +85,11 @@ public class ConnectedStateHandler implements StateHandler {
       }
       case AX25_SABM:
       case AX25_SABME: {
+        boolean extended = event.getType().equals(Type.AX25_SABME);
+        if(extended && !state.isExtendedAllowed()) {
+          newState = StateHelper.refuseExtended(state, packet, outgoingPackets);
+          break;
+        }
         // Send UA with F=P
         boolean finalFlag = ((UFrame) packet).isPollFinalSet();
         UFrame ua = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.UA, finalFlag);
@@ -120,6 +102,7 @@ public class ConnectedStateHandler implements StateHandler {
           state.sendDataLinkPrimitive(DataLinkPrimitive.newConnectIndication(state.getRemoteNodeCall(), state.getLocalNodeCall()));
         }
         state.reset();
+        state.setExtended(extended);
         newState = State.CONNECTED;
         break;
       }
@@ -178,7 +161,7 @@ public class ConnectedStateHandler implements StateHandler {
         }
         SFrame frame = (SFrame) packet;
         StateHelper.checkNeedForResponse(state, frame, outgoingPackets);
-        if(ByteUtil.lessThanEq(frame.getReceiveSequenceNumber(), state.getSendStateByte())) {
+        if(state.isValidNR(frame.getReceiveSequenceNumber())) {
           StateHelper.checkIFrameAck(state, frame.getReceiveSequenceNumber());
           newState = State.CONNECTED;
         } else {
@@ -193,17 +176,23 @@ public class ConnectedStateHandler implements StateHandler {
         // Got info frame, need to ack it
         IFrame iFrame = (IFrame) packet;
         if(iFrame.getCommand().equals(Command.COMMAND)) {
-          if(ByteUtil.lessThanEq(state.getAcknowledgeStateByte(), iFrame.getReceiveSequenceNumber()) &&
-              ByteUtil.lessThanEq(iFrame.getReceiveSequenceNumber(), state.getSendStateByte())) {
+          if(state.isValidNR(iFrame.getReceiveSequenceNumber())) {
             StateHelper.checkIFrameAck(state, iFrame.getReceiveSequenceNumber());
             if(ByteUtil.equals(iFrame.getSendSequenceNumber(), state.getReceiveStateByte())) {
               state.incrementReceiveState();
               state.clearRejectException();
               state.sendDataLinkPrimitive(DataLinkPrimitive.newDataIndication(iFrame));
+              // This may have filled a gap
+              StateHelper.deliverBufferedIFrames(state);
               if(iFrame.isPollBitSet()) {
-                // Set N(R) = V(R)
-                state.enqueueInfoAck(outgoingPackets);
+                // Answer the poll right away
+                StateHelper.enquiryResponse(state, iFrame, outgoingPackets);
+              } else {
+                // Set N(R) = V(R), on our next I frame if one goes out soon enough
+                state.enqueueInfoAck();
               }
+            } else if(state.isSelectiveRejectEnabled()) {
+              StateHelper.selectiveReject(state, iFrame, outgoingPackets);
             } else {
               if(state.isRejectException()) {
                 // Discard IFrame
@@ -214,7 +203,8 @@ public class ConnectedStateHandler implements StateHandler {
                       Command.RESPONSE,
                       SupervisoryFrame.ControlType.RR,
                       state.getReceiveState(),
-                      true);
+                      true,
+                      state.isExtended());
                   outgoingPackets.accept(rr);
                   state.clearAckPending();
                 }
@@ -227,7 +217,8 @@ public class ConnectedStateHandler implements StateHandler {
                     Command.RESPONSE,
                     SupervisoryFrame.ControlType.REJ,
                     state.getReceiveState(),
-                    iFrame.isPollBitSet());
+                    iFrame.isPollBitSet(),
+                    state.isExtended());
                 outgoingPackets.accept(rej);
                 state.clearAckPending();
               }
@@ -246,6 +237,36 @@ public class ConnectedStateHandler implements StateHandler {
         break;
       }
 
+      case AX25_REJ: {
+        // clear peer busy
+        SFrame frame = (SFrame) packet;
+        StateHelper.checkNeedForResponse(state, frame, outgoingPackets);
+        if(state.isValidNR(frame.getReceiveSequenceNumber())) {
+          state.setAcknowledgeState(frame.getReceiveSequenceNumber());
+          state.getT1Timer().cancel();
+          state.getT3Timer().start();
+          StateHelper.selectT1Value(state);
+          StateHelper.invokeRetransmission(frame.getReceiveSequenceNumber(), state);
+          newState = State.CONNECTED;
+        } else {
+          StateHelper.nrErrorRecovery(state, outgoingPackets);
+          newState = State.AWAITING_CONNECTION;
+        }
+        break;
+      }
+
+      case AX25_SREJ: {
+        // clear peer busy
+        SFrame frame = (SFrame) packet;
+        if(StateHelper.selectiveRetransmit(state, frame, outgoingPackets)) {
+          newState = State.CONNECTED;
+        } else {
+          StateHelper.nrErrorRecovery(state, outgoingPackets);
+          newState = State.AWAITING_CONNECTION;
+        }
+        break;
+      }
+
       case AX25_FRMR: {
         state.sendDataLinkPrimitive(DataLinkPrimitive
                 .newErrorResponse(state.getRemoteNodeCall(), state.getLocalNodeCall(), ErrorType.K));
@@ -255,8 +276,6 @@ public class ConnectedStateHandler implements StateHandler {
         break;
       }
 
-      case AX25_SREJ:
-      case AX25_REJ:
       case AX25_UNKNOWN:
       default:
         newState = State.CONNECTED;
@@ -77,44 +77,18 @@ public class DisconnectedStateHandler implements StateHandler {
         newState = State.AWAITING_CONNECTION;
         break;
       }
-      case AX25_SABM: {
-        // Check if we can connect (are we busy?)
-        // Send UA
-        UFrame ua = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.UA, true);
-        outgoingPackets.accept(ua);
-        // Reset exceptions, state values, and timers
-        StateHelper.clearExceptionConditions(state);
-        state.reset();
-        state.sendDataLinkPrimitive(DataLinkPrimitive.newConnectIndication(state.getRemoteNodeCall(), state.getLocalNodeCall()));
-        // Set TIV (T initial value?)
-        state.getT3Timer().start();
-        /*
-        if(!state.getWelcomeMessage().isEmpty()) {
-          state.pushIFrame(
-              IFrame.create(
-                  packet.getSourceCall(),
-                  packet.getDestCall(),
-                  Command.COMMAND,
-                  (byte) 0,
-                  (byte) 0,
-                  true,
-                  Protocol.NO_LAYER3,
-                  (state.getWelcomeMessage() + '\r').getBytes(StandardCharsets.US_ASCII)));
+      case AX25_SABME: {
+        if(!state.isExtendedAllowed()) {
+          newState = StateHelper.refuseExtended(state, packet, outgoingPackets);
         } else {
-          // TODO warn, no welcome message defined
+          newState = acceptConnect(state, packet, true, outgoingPackets);
         }
-        */
-        newState = State.CONNECTED;
         break;
       }
-      case AX25_SABME: {
-        // AX25 2.2 not supported
-        UFrame ua = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.DM, false);
-        outgoingPackets.accept(ua);
-        newState = State.DISCONNECTED;
+      case AX25_SABM: {
+        newState = acceptConnect(state, packet, false, outgoingPackets);
         break;
       }
-
       // Respond to all other commands with DM
       case AX25_FRMR:
       case AX25_RR:
@@ -148,4 +122,42 @@ public class DisconnectedStateHandler implements StateHandler {
     }
     return newState;
   }
+
+  /**
+   * Accept an incoming connection, in modulo 128 mode if extended is set
+   */
+  private static State acceptConnect(
+      AX25State state,
+      AX25Packet packet,
+      boolean extended,
+      Consumer<AX25Packet> outgoingPackets) {
+    // Check if we can connect (are we busy?)
+    // Send UA
+    UFrame ua = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.UA, true);
+    outgoingPackets.accept(ua);
+    // Reset exceptions, state values, and timers
+    StateHelper.clearExceptionConditions(state);
+    state.reset();
+    state.setExtended(extended);
+    state.sendDataLinkPrimitive(DataLinkPrimitive.newConnectIndication(state.getRemoteNodeCall(), state.getLocalNodeCall()));
+    // Set TIV (T initial value?)
+    state.getT3Timer().start();
+    /*
+    if(!state.getWelcomeMessage().isEmpty()) {
+      state.pushIFrame(
+          IFrame.create(
+              packet.getSourceCall(),
+              packet.getDestCall(),
+              Command.COMMAND,
+              (byte) 0,
+              (byte) 0,
+              true,
+              Protocol.NO_LAYER3,
+              (state.getWelcomeMessage() + '\r').getBytes(StandardCharsets.US_ASCII)));
+    } else {
+      // TODO warn, no welcome message defined
+    }
+    */
+    return State.CONNECTED;
+  }
 }
@@ -5,6 +5,7 @@ import java.util.function.Consumer;
 import net.tarpn.datalink.DataLinkPrimitive;
 import net.tarpn.packet.impl.ax25.AX25Packet;
 import net.tarpn.packet.impl.ax25.AX25Packet.Command;
+import net.tarpn.packet.impl.ax25.AX25Packet.HasInfo;
 import net.tarpn.packet.impl.ax25.AX25Packet.SupervisoryFrame;
 import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame.ControlType;
 import net.tarpn.packet.impl.ax25.AX25State;
@@ -26,13 +27,37 @@ public class StateHelper {
   public static void establishDataLink(AX25State state, Consumer<AX25Packet> packetConsumer) {
     clearExceptionConditions(state);
     state.resetRC();
+    state.setExtended(state.isExtendedAllowed());
+    sendSetMode(state, packetConsumer);
+    state.getT3Timer().cancel();
+    state.getT1Timer().start();
+  }
+
+  /**
+   * Send SABME if we're trying for a modulo 128 link, otherwise SABM
+   */
+  public static void sendSetMode(AX25State state, Consumer<AX25Packet> packetConsumer) {
     UFrame sabm = UFrame.create(
         state.getRemoteNodeCall(),
         state.getLocalNodeCall(),
-        Command.COMMAND, ControlType.SABM, true);
+        Command.COMMAND, state.isExtended() ? ControlType.SABME : ControlType.SABM, true);
     packetConsumer.accept(sabm);
-    state.getT3Timer().cancel();
-    state.getT1Timer().start();
+  }
+
+  /**
+   * Answer a SABME with DM when modulo 128 isn't enabled ("l2.extended"). The remote should fall back to SABM.
+   */
+  public static AX25State.State refuseExtended(AX25State state, AX25Packet packet, Consumer<AX25Packet> packetConsumer) {
+    boolean finalFlag = ((UFrame) packet).isPollFinalSet();
+    UFrame dm = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.DM, finalFlag);
+    packetConsumer.accept(dm);
+    if(!state.getState().equals(AX25State.State.DISCONNECTED)) {
+      state.clearIFrames();
+      state.sendDataLinkPrimitive(DataLinkPrimitive.newDisconnectIndication(state.getRemoteNodeCall(), state.getLocalNodeCall()));
+      state.getT1Timer().cancel();
+      state.getT3Timer().cancel();
+    }
+    return AX25State.State.DISCONNECTED;
   }
 
   public static void clearExceptionConditions(AX25State state) {
@@ -49,9 +74,12 @@ public class StateHelper {
         Command.COMMAND,
         SupervisoryFrame.ControlType.RR,
         state.getReceiveState(),
-        true);
+        true,
+        state.isExtended());
     packetConsumer.accept(resp);
     state.clearAckPending();
+    state.clearRTTSamples();
+    selectT1Value(state);
     state.getT1Timer().start();
   }
 
@@ -63,13 +91,32 @@ public class StateHelper {
         Command.RESPONSE,
         SupervisoryFrame.ControlType.RR,
         state.getReceiveState(),
-        true);
+        true,
+        state.isExtended());
     packetConsumer.accept(rr);
     state.clearAckPending();
   }
 
+  /**
+   * T2 expired without an I frame going out to carry our N(R), so send it in an RR
+   */
+  public static void sendDelayedAck(AX25State state, Consumer<AX25Packet> packetConsumer) {
+    if(state.isAckPending()) {
+      SFrame rr = SFrame.create(
+          state.getRemoteNodeCall(),
+          state.getLocalNodeCall(),
+          Command.RESPONSE,
+          SupervisoryFrame.ControlType.RR,
+          state.getReceiveState(),
+          false,
+          state.isExtended());
+      packetConsumer.accept(rr);
+      state.clearAckPending();
+    }
+  }
+
   public static void checkIFrameAck(AX25State state, int nr) {
-    if(nr == state.getSendState()) {
+    if(nr == state.getSendStateByte()) {
       state.setAcknowledgeState((byte)(nr & 0xff));
       state.getT1Timer().cancel();
       state.getT3Timer().start();
@@ -106,27 +153,135 @@ public class StateHelper {
   }
 
 
+  /**
+   * Set T1 from the measured round trip time, backing off for each retry. The round trip is sampled as acks
+   * come in, see {@link AX25State#setAcknowledgeState(byte)}.
+   */
   public static void selectT1Value(AX25State state) {
-    if(state.getRC() == 0) {
-      int newSRT = (int)((7./8. * state.getSRT())
-          + (1./8. * state.getT1Timer().getTimeout())
-          - (1./8. * state.getT1Timer().timeRemaining()));
-      state.setSRT(newSRT);
-      state.getT1Timer().setTimeout(newSRT * 2);
-    } else {
-      int newT1 = (int)(Math.pow(2., (state.getRC() + 1)) * state.getSRT());
-      state.getT1Timer().setTimeout(newT1);
+    state.getT1Timer().setTimeout(state.computeT1());
+  }
+
+  /**
+   * Send queued I frames until the window is full or the queue is empty
+   */
+  public static void sendPendingIFrames(AX25State state, Consumer<AX25Packet> packetConsumer) {
+    HasInfo pendingIFrame;
+    while(!state.windowExceeded() && (pendingIFrame = state.popIFrame()) != null) {
+      IFrame iFrame = IFrame.create(
+          state.getRemoteNodeCall(),
+          state.getLocalNodeCall(),
+          Command.COMMAND,
+          state.getSendStateByte(),
+          state.getReceiveStateByte(),
+          false,
+          pendingIFrame.getProtocol(),
+          pendingIFrame.getInfo(),
+          state.isExtended());
+      packetConsumer.accept(iFrame);
+      // Frames put back by invokeRetransmission are the old IFrame, new data isn't
+      state.storeSentIFrame(iFrame, pendingIFrame instanceof IFrame);
+      state.incrementSendState();
+      state.clearAckPending();
+      if(!state.getT1Timer().isRunning()) {
+        state.getT3Timer().cancel();
+        state.getT1Timer().start();
+      }
+    }
+  }
+
+  /**
+   * Hold on to an I frame that arrived ahead of V(R), and send an SREJ for each frame in between that we
+   * haven't already asked for. Anything outside the receive window (like a duplicate) is discarded.
+   */
+  public static void selectiveReject(AX25State state, IFrame iFrame, Consumer<AX25Packet> packetConsumer) {
+    int modulus = state.getModulus();
+    int vr = state.getReceiveStateByte();
+    int ahead = Math.floorMod(iFrame.getSendSequenceNumber() - vr, modulus);
+    if(ahead < state.getWindowSize()) {
+      state.bufferOutOfOrderIFrame(iFrame);
+      for(int i = 0; i < ahead; i++) {
+        int ns = (vr + i) % modulus;
+        if(!state.hasBufferedIFrame(ns) && state.markSelectiveReject(ns)) {
+          SFrame srej = SFrame.create(
+              iFrame.getSourceCall(),
+              iFrame.getDestCall(),
+              Command.RESPONSE,
+              SupervisoryFrame.ControlType.SREJ,
+              ns,
+              false,
+              state.isExtended());
+          packetConsumer.accept(srej);
+        }
+      }
+    }
+    if(iFrame.isPollBitSet()) {
+      enquiryResponse(state, iFrame, packetConsumer);
+    }
+  }
+
+  /**
+   * After V(R) moves, pass up any buffered frames which are now in sequence
+   *
+   * @return the number of frames delivered
+   */
+  public static int deliverBufferedIFrames(AX25State state) {
+    int delivered = 0;
+    IFrame next;
+    while((next = state.pollBufferedIFrame()) != null) {
+      state.incrementReceiveState();
+      state.sendDataLinkPrimitive(DataLinkPrimitive.newDataIndication(next));
+      delivered++;
     }
+    return delivered;
+  }
+
+  /**
+   * Send again just the frame asked for by an SREJ. If the SREJ has F set, it also acknowledges everything
+   * before N(R).
+   *
+   * @return false if N(R) is invalid and the link needs to be re-established
+   */
+  public static boolean selectiveRetransmit(AX25State state, SFrame srej, Consumer<AX25Packet> packetConsumer) {
+    int nr = srej.getReceiveSequenceNumber();
+    if(!state.isValidNR(nr) || nr == state.getSendStateByte()) {
+      return false;
+    }
+    if(srej.isPollOrFinalSet()) {
+      checkIFrameAck(state, nr);
+    }
+    IFrame oldFrame = state.getSentIFrame(nr);
+    if(oldFrame != null) {
+      IFrame iFrame = IFrame.create(
+          state.getRemoteNodeCall(),
+          state.getLocalNodeCall(),
+          Command.COMMAND,
+          (byte) nr,
+          state.getReceiveStateByte(),
+          false,
+          oldFrame.getProtocol(),
+          oldFrame.getInfo(),
+          state.isExtended());
+      packetConsumer.accept(iFrame);
+      state.storeSentIFrame(iFrame, true);
+      state.clearAckPending();
+      if(!state.getT1Timer().isRunning()) {
+        state.getT3Timer().cancel();
+        state.getT1Timer().start();
+      }
+    }
+    return true;
   }
 
   public static void invokeRetransmission(byte nr, AX25State state) {
-    // Current send seq
-    byte x = state.getSendStateByte();
-    byte vs = nr;
-    while(vs != x) {
-      IFrame oldFrame = state.getSentIFrame(state.getSendStateByte());
-      state.pushIFrame(oldFrame);
-      vs += 1;
+    // Everything from N(R) up to the current V(S) goes out again, oldest first and ahead of any new data
+    int modulus = state.getModulus();
+    int outstanding = Math.floorMod(state.getSendStateByte() - nr, modulus);
+    for(int i = outstanding - 1; i >= 0; i--) {
+      IFrame oldFrame = state.getSentIFrame((nr + i) % modulus);
+      if(oldFrame != null) {
+        state.requeueIFrame(oldFrame);
+      }
     }
+    state.setSendState(nr);
   }
 }
@@ -6,13 +6,11 @@ import net.tarpn.datalink.DataLinkPrimitive;
 import net.tarpn.util.ByteUtil;
 import net.tarpn.packet.impl.ax25.AX25Packet;
 import net.tarpn.packet.impl.ax25.AX25Packet.Command;
-import net.tarpn.packet.impl.ax25.AX25Packet.HasInfo;
 import net.tarpn.packet.impl.ax25.AX25Packet.SupervisoryFrame;
 import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame;
 import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame.ControlType;
 import net.tarpn.packet.impl.ax25.AX25State;
 import net.tarpn.packet.impl.ax25.AX25State.State;
-import net.tarpn.util.Timer;
 import net.tarpn.packet.impl.ax25.AX25StateEvent;
 import net.tarpn.packet.impl.ax25.AX25StateEvent.InternalInfo;
 import net.tarpn.datalink.DataLinkPrimitive.ErrorType;
@@ -45,6 +43,8 @@ public class TimerRecoveryStateHandler implements StateHandler {
       case DL_DISCONNECT: {
         state.clearIFrames();
         state.resetRC();
+        // The DISC ends the link, there's no point acking anything now
+        state.clearAckPending();
         UFrame disc = UFrame.create(
             state.getRemoteNodeCall(),
             state.getLocalNodeCall(),
@@ -62,36 +62,13 @@ public class TimerRecoveryStateHandler implements StateHandler {
         break;
       }
       case IFRAME_READY: {
-        HasInfo pendingIFrame = state.popIFrame();
-        if(pendingIFrame == null) {
-          newState = State.TIMER_RECOVERY;
-          break;
-        }
-        if(state.windowExceeded()) {
-          LOG.warn("IFrame window is full, waiting a bit and retrying. Pending IFrames: " + pendingIFrame + ", " + state.peekIFrames());
-          // one-shot timer to delay the re-sending a bit
-          Timer.create(200, () ->
-              state.pushIFrame(pendingIFrame)
-          ).start();
-        } else {
-          IFrame iFrame = IFrame.create(
-              state.getRemoteNodeCall(),
-              state.getLocalNodeCall(),
-              Command.COMMAND,
-              state.getSendStateByte(),
-              state.getReceiveStateByte(),
-              false,
-              pendingIFrame.getProtocol(),
-              pendingIFrame.getInfo());
-          outgoingPackets.accept(iFrame);
-          state.storeSentIFrame(iFrame);
-          state.incrementSendState();
-          state.clearAckPending();
-          if(!state.getT1Timer().isRunning()) {
-            state.getT3Timer().cancel();
-            state.getT1Timer().start();
-          }
-        }
+        // Send what the window allows, the rest waits in the queue until V(A) moves
+        StateHelper.sendPendingIFrames(state, outgoingPackets);
+        newState = State.TIMER_RECOVERY;
+        break;
+      }
+      case T2_EXPIRE: {
+        StateHelper.sendDelayedAck(state, outgoingPackets);
         newState = State.TIMER_RECOVERY;
         break;
       }
@@ -118,8 +95,13 @@ public class TimerRecoveryStateHandler implements StateHandler {
         }
         break;
       }
-      case AX25_SABME: // TODO we shouldn't accept this since we don't support it
+      case AX25_SABME:
       case AX25_SABM: {
+        boolean extended = event.getType().equals(AX25StateEvent.Type.AX25_SABME);
+        if(extended && !state.isExtendedAllowed()) {
+          newState = StateHelper.refuseExtended(state, packet, outgoingPackets);
+          break;
+        }
         boolean isFinalSet = ((UnnumberedFrame) packet).isPollFinalSet();
         UFrame ua = UFrame.create(packet.getSourceCall(), packet.getDestCall(), Command.RESPONSE, ControlType.UA, isFinalSet);
         outgoingPackets.accept(ua);
@@ -130,12 +112,14 @@ public class TimerRecoveryStateHandler implements StateHandler {
           state.sendDataLinkPrimitive(DataLinkPrimitive.newConnectIndication(state.getRemoteNodeCall(), state.getLocalNodeCall()));
         }
         state.reset();
+        state.setExtended(extended);
         state.getT3Timer().start();
         newState = State.CONNECTED;
         break;
       }
       case AX25_RNR:
         // TODO Set peer busy
+      case AX25_REJ:
       case AX25_RR: {
         // TODO Set peer clear
         SFrame sFrame = (SFrame)packet;
@@ -158,10 +142,11 @@ public class TimerRecoveryStateHandler implements StateHandler {
           //
           // We get an RR with N(R) of 5, that means the receiver expects our next send seq to be 5
           // If this is equal to our last ack'd seq it means we've missed a whole window.
-          if(ByteUtil.lessThanEq(sFrame.getReceiveSequenceNumber(), state.getSendStateByte()) &&
-              ByteUtil.lessThanEq(state.getAcknowledgeStateByte(), sFrame.getReceiveSequenceNumber())) {
+          if(state.isValidNR(sFrame.getReceiveSequenceNumber())) {
             state.setAcknowledgeState(sFrame.getReceiveSequenceNumber());
             if(state.checkSendEqAckSeq()) {
+              state.resetRC();
+              StateHelper.selectT1Value(state);
               state.getT3Timer().start();
               newState = State.CONNECTED;
             } else {
@@ -178,9 +163,11 @@ public class TimerRecoveryStateHandler implements StateHandler {
           if (sFrame.getCommand().equals(Command.COMMAND) && sFrame.isPollOrFinalSet()) {
             StateHelper.enquiryResponse(state, sFrame, outgoingPackets);
           }
-          if (ByteUtil.lessThanEq(state.getAcknowledgeStateByte(), sFrame.getReceiveSequenceNumber()) &&
-              ByteUtil.lessThanEq(sFrame.getReceiveSequenceNumber(), state.getSendStateByte())) {
+          if (state.isValidNR(sFrame.getReceiveSequenceNumber())) {
             state.setAcknowledgeState(sFrame.getReceiveSequenceNumber());
+            if (event.getType().equals(AX25StateEvent.Type.AX25_REJ)) {
+              StateHelper.invokeRetransmission(sFrame.getReceiveSequenceNumber(), state);
+            }
             newState = State.TIMER_RECOVERY;
           } else {
             // N(R) error recovery
@@ -240,16 +227,23 @@ public class TimerRecoveryStateHandler implements StateHandler {
         // Got info frame, need to ack it
         IFrame iFrame = (IFrame) packet;
         if(iFrame.getCommand().equals(Command.COMMAND)) {
-          if(ByteUtil.lessThanEq(iFrame.getReceiveSequenceNumber(), state.getSendStateByte())) {
+          if(state.isValidNR(iFrame.getReceiveSequenceNumber())) {
             StateHelper.checkIFrameAck(state, iFrame.getReceiveSequenceNumber());
             if(ByteUtil.equals(iFrame.getSendSequenceNumber(), state.getReceiveStateByte())) {
               state.incrementReceiveState();
               state.clearRejectException();
               state.sendDataLinkPrimitive(DataLinkPrimitive.newDataIndication(iFrame));
+              // This may have filled a gap
+              StateHelper.deliverBufferedIFrames(state);
               if(iFrame.isPollBitSet()) {
-                // Set N(R) = V(R)
-                state.enqueueInfoAck(outgoingPackets);
+                // Answer the poll right away
+                StateHelper.enquiryResponse(state, iFrame, outgoingPackets);
+              } else {
+                // Set N(R) = V(R), on our next I frame if one goes out soon enough
+                state.enqueueInfoAck();
               }
+            } else if(state.isSelectiveRejectEnabled()) {
+              StateHelper.selectiveReject(state, iFrame, outgoingPackets);
             } else {
               if(state.isRejectException()) {
                 // Discard IFrame
@@ -260,7 +254,8 @@ public class TimerRecoveryStateHandler implements StateHandler {
                       Command.RESPONSE,
                       SupervisoryFrame.ControlType.RR,
                       state.getReceiveState(),
-                      true);
+                      true,
+                      state.isExtended());
                   outgoingPackets.accept(rr);
                   state.clearAckPending();
                 }
@@ -273,7 +268,8 @@ public class TimerRecoveryStateHandler implements StateHandler {
                     Command.RESPONSE,
                     SupervisoryFrame.ControlType.REJ,
                     state.getReceiveState(),
-                    iFrame.isPollBitSet());
+                    iFrame.isPollBitSet(),
+                    state.isExtended());
                 outgoingPackets.accept(rej);
                 state.clearAckPending();
               }
@@ -291,6 +287,16 @@ public class TimerRecoveryStateHandler implements StateHandler {
         }
         break;
       }
+      case AX25_SREJ: {
+        SFrame sFrame = (SFrame) packet;
+        if(StateHelper.selectiveRetransmit(state, sFrame, outgoingPackets)) {
+          newState = State.TIMER_RECOVERY;
+        } else {
+          StateHelper.nrErrorRecovery(state, outgoingPackets);
+          newState = State.AWAITING_CONNECTION;
+        }
+        break;
+      }
       case AX25_FRMR: {
         state.sendDataLinkPrimitive(DataLinkPrimitive
                 .newErrorResponse(state.getRemoteNodeCall(), state.getLocalNodeCall(), ErrorType.K));
@@ -300,8 +306,6 @@ public class TimerRecoveryStateHandler implements StateHandler {
         break;
       }
       // TODO implement these (?)
-      case AX25_SREJ:
-      case AX25_REJ:
       case T3_EXPIRE:
       case AX25_UNKNOWN:
       default:
@@ -1,36 +1,42 @@
 package net.tarpn.util;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-
 /**
  * Generic timer that runs a callback when the timer expires. Supports cancelling and restarting.
+ *
+ * Timers live on a {@link TimerWheel}, restarting one just moves it to a different bucket. Timers created
+ * without a wheel use {@link TimerWheel#getDefault()}.
  */
 public class Timer {
-  private static final ScheduledExecutorService TIMER_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
 
+  private final TimerWheel wheel;
   private final Runnable callback;
   private long timeout;
-  private ScheduledFuture<?> future;
   private long startedAt;
 
-  private Timer(long timeout, Runnable callback) {
+  // State for the TimerWheel, guarded by the wheel
+  Timer prev;
+  Timer next;
+  int bucket = -1;
+  long rounds;
+  boolean firing;
+
+  private Timer(TimerWheel wheel, long timeout, Runnable callback) {
+    this.wheel = wheel;
     this.timeout = timeout;
     this.callback = callback;
   }
 
   public static Timer create(long timeout, Runnable callback) {
-    return new Timer(timeout, callback);
+    return create(TimerWheel.getDefault(), timeout, callback);
+  }
+
+  public static Timer create(TimerWheel wheel, long timeout, Runnable callback) {
+    return new Timer(wheel, timeout, callback);
   }
 
   public void start() {
-    if(future != null) {
-      future.cancel(false);
-    }
-    future = TIMER_EXECUTOR.schedule(callback, timeout, TimeUnit.MILLISECONDS);
     startedAt = System.currentTimeMillis();
+    wheel.schedule(this);
   }
 
   public long getTimeout() {
@@ -42,13 +48,11 @@ public class Timer {
   }
 
   public void cancel() {
-    if(future != null) {
-      future.cancel(false);
-    }
+    wheel.cancel(this);
   }
 
   public boolean isRunning() {
-    return future != null && !(future.isDone() || future.isCancelled());
+    return wheel.isScheduled(this);
   }
 
   public long timeRemaining() {
@@ -59,6 +63,10 @@ public class Timer {
     }
   }
 
+  void expire() {
+    callback.run();
+  }
+
   @Override
   public String toString() {
     return "Timer{" +
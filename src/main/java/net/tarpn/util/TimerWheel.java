@@ -0,0 +1,182 @@
+package net.tarpn.util;
+
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel for {@link Timer}s.
+ *
+ * Time is divided into ticks, and each timer sits in the bucket for the tick it expires on (plus however many
+ * turns of the wheel it needs to wait). Each bucket is an intrusive linked list through the timers themselves,
+ * so starting, restarting, or cancelling a timer is O(1) and doesn't allocate anything.
+ *
+ * The wheel is driven by a single periodic task on the given executor, which only runs while there are timers
+ * waiting. Expired timers run their callbacks on that executor. When the executor is a channel's event loop,
+ * this means timer callbacks run on the same thread as the channel's handlers.
+ */
+public class TimerWheel {
+
+  public static final long DEFAULT_TICK_MS = 10;
+  public static final int DEFAULT_WHEEL_SIZE = 512;
+
+  private static final TimerWheel DEFAULT = new TimerWheel(
+      new DefaultEventExecutor(new DefaultThreadFactory("timer-wheel", true)));
+
+  private final EventExecutor executor;
+  private final long tickMillis;
+  private final Timer[] buckets;
+  private final int mask;
+  private final ArrayDeque<Timer> expired = new ArrayDeque<>();
+
+  private long currentTick = 0;
+  private int pending = 0;
+  private ScheduledFuture<?> tickTask = null;
+
+  public TimerWheel(EventExecutor executor) {
+    this(executor, DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+  }
+
+  public TimerWheel(EventExecutor executor, long tickMillis, int wheelSize) {
+    if (Integer.bitCount(wheelSize) != 1) {
+      throw new IllegalArgumentException("Wheel size must be a power of two, got " + wheelSize);
+    }
+    this.executor = executor;
+    this.tickMillis = tickMillis;
+    this.buckets = new Timer[wheelSize];
+    this.mask = wheelSize - 1;
+  }
+
+  /**
+   * A wheel with its own thread, for timers which don't belong to a channel
+   */
+  public static TimerWheel getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * The executor timer callbacks run on
+   */
+  public EventExecutor executor() {
+    return executor;
+  }
+
+  /**
+   * How often the wheel ticks, timers may fire up to this much late
+   */
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  /**
+   * (Re)schedule a timer to expire after its timeout. If it was already waiting, it is moved.
+   */
+  synchronized void schedule(Timer timer) {
+    boolean wasScheduled = unlink(timer);
+    timer.firing = false;
+    // Round up, plus one since the current tick is already partly over. Better late than early.
+    long ticks = (Math.max(timer.getTimeout(), 0) + tickMillis - 1) / tickMillis + 1;
+    timer.rounds = (ticks - 1) / buckets.length;
+    link(timer, (int) ((currentTick + ticks) & mask));
+    if (!wasScheduled && pending++ == 0) {
+      tickTask = executor.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  synchronized void cancel(Timer timer) {
+    timer.firing = false;
+    if (unlink(timer)) {
+      if (--pending == 0) {
+        stopTicking();
+      }
+    }
+  }
+
+  synchronized boolean isScheduled(Timer timer) {
+    return timer.bucket != -1;
+  }
+
+  /**
+   * Advance the wheel by one tick and run the callbacks of any timers which have expired
+   */
+  private void tick() {
+    synchronized (this) {
+      currentTick++;
+      Timer timer = buckets[(int) (currentTick & mask)];
+      while (timer != null) {
+        Timer next = timer.next;
+        if (timer.rounds > 0) {
+          timer.rounds--;
+        } else {
+          unlink(timer);
+          pending--;
+          timer.firing = true;
+          expired.add(timer);
+        }
+        timer = next;
+      }
+      if (pending == 0) {
+        stopTicking();
+      }
+    }
+
+    Timer timer;
+    while ((timer = pollExpired()) != null) {
+      timer.expire();
+    }
+  }
+
+  /**
+   * Get the next expired timer, skipping any which were restarted or cancelled by an earlier callback
+   */
+  private synchronized Timer pollExpired() {
+    Timer timer;
+    while ((timer = expired.poll()) != null) {
+      if (timer.firing) {
+        timer.firing = false;
+        return timer;
+      }
+    }
+    return null;
+  }
+
+  private void stopTicking() {
+    if (tickTask != null) {
+      tickTask.cancel(false);
+      tickTask = null;
+    }
+  }
+
+  private void link(Timer timer, int bucket) {
+    Timer head = buckets[bucket];
+    timer.bucket = bucket;
+    timer.prev = null;
+    timer.next = head;
+    if (head != null) {
+      head.prev = timer;
+    }
+    buckets[bucket] = timer;
+  }
+
+  private boolean unlink(Timer timer) {
+    if (timer.bucket == -1) {
+      return false;
+    }
+    if (timer.prev != null) {
+      timer.prev.next = timer.next;
+    } else {
+      buckets[timer.bucket] = timer.next;
+    }
+    if (timer.next != null) {
+      timer.next.prev = timer.prev;
+    }
+    timer.prev = null;
+    timer.next = null;
+    timer.bucket = -1;
+    return true;
+  }
+}
@@ -3,7 +3,9 @@ package net.tarpn.frame;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import net.tarpn.config.Configs;
 import net.tarpn.netty.network.NetRomDecoder;
@@ -16,6 +18,9 @@ import net.tarpn.packet.impl.ax25.AX25Packet;
 import net.tarpn.packet.impl.ax25.UIFrame;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 public class NetRomNodesTest {
   @Test
   public void testTarpnData() throws IOException {
@@ -133,6 +138,60 @@ public class NetRomNodesTest {
     //System.err.println(netrom);
   }
 
+  @Test
+  public void testForEachDestination() throws IOException {
+    byte[] packetBytes = Files.readAllBytes(Paths.get("data/tadd-nodes-part-1.bin"));
+    byte[] info = ((UIFrame) AX25PacketReader.parse(packetBytes)).getInfo();
+    NetRomNodes nodes = NetRomNodes.read(info);
+
+    assertEquals(nodes.getSendingAlias(), NetRomNodes.readSendingAlias(info));
+    List<NetRomNodes.NodeDestination> expected = nodes.getDestinationList();
+    int[] idx = new int[1];
+    int count = NetRomNodes.forEachDestination(info, entry -> {
+      NetRomNodes.NodeDestination dest = expected.get(idx[0]++);
+      assertEquals(dest.getDestNode(), entry.getDestNode());
+      assertEquals(dest.getDestAlias(), entry.getDestAlias());
+      assertEquals(dest.getBestNeighborNode(), entry.getBestNeighborNode());
+      assertEquals(dest.getQuality(), entry.getQuality());
+    });
+    assertEquals(expected.size(), count);
+  }
+
+  @Test
+  public void testWriteFrames() {
+    List<NetRomNodes.NodeDestination> destinations = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      destinations.add(new NetRomNodes.NodeDestination(
+          AX25Call.create("N" + i + "ABC", i % 16), "DEST" + i, AX25Call.create("K4DBZ-2"), 100 + i));
+    }
+    NetRomNodes nodes = new NetRomNodes("DAVID", destinations);
+
+    List<byte[]> frames = NetRomNodes.writeFrames(nodes);
+    assertEquals(3, frames.size());
+    assertEquals(7 + 10 * 21, frames.get(0).length);
+    assertEquals(7 + 5 * 21, frames.get(2).length);
+
+    // Each frame stands on its own, and together they're the whole table
+    List<NetRomNodes.NodeDestination> read = new ArrayList<>();
+    for (byte[] frame : frames) {
+      assertTrue(frame.length <= NetRomNodes.MAX_FRAME_LENGTH);
+      NetRomNodes part = NetRomNodes.read(frame);
+      assertEquals("DAVID", part.getSendingAlias());
+      read.addAll(part.getDestinationList());
+    }
+    assertEquals(destinations.size(), read.size());
+    for (int i = 0; i < destinations.size(); i++) {
+      assertEquals(destinations.get(i).getDestNode(), read.get(i).getDestNode());
+      assertEquals(destinations.get(i).getDestAlias(), read.get(i).getDestAlias());
+      assertEquals(destinations.get(i).getQuality(), read.get(i).getQuality());
+    }
+
+    // With nothing to say, we still send the header
+    frames = NetRomNodes.writeFrames(new NetRomNodes("DAVID", new ArrayList<>()));
+    assertEquals(1, frames.size());
+    assertEquals(7, frames.get(0).length);
+  }
+
   @Test
   public void testReadWrite() {
     NetRomNodes nodes = new NetRomNodes("TEST1", Arrays.asList(
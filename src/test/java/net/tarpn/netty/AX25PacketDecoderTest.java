@@ -1,25 +1,34 @@
 package net.tarpn.netty;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import net.tarpn.config.PortConfig;
 import net.tarpn.config.impl.PortConfigImpl;
 import net.tarpn.datalink.DataLinkPrimitive;
+import net.tarpn.frame.impl.KISS;
+import net.tarpn.frame.impl.KISSFrame;
 import net.tarpn.packet.impl.ax25.AX25Call;
 import net.tarpn.packet.impl.ax25.AX25Packet;
+import net.tarpn.packet.impl.ax25.AX25PacketView;
 import net.tarpn.packet.impl.ax25.SFrame;
+import net.tarpn.packet.impl.ax25.UIFrame;
 import org.apache.commons.configuration2.MapConfiguration;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import static net.tarpn.netty.KISSFrameDecoderTest.fromInts;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class AX25PacketDecoderTest {
     private static final Logger LOG = LoggerFactory.getLogger(AX25PacketDecoderTest.class);
@@ -43,7 +52,76 @@ public class AX25PacketDecoderTest {
         assertEquals(packet.getSource(), "K4DBZ-9");
         assertEquals(packet.getDestination(), "K4DBZ-2");
         assertEquals(packet.getFrameType(), AX25Packet.FrameType.S);
-        assertEquals(((SFrame) packet).getControlType(), AX25Packet.SupervisoryFrame.ControlType.RR);
+        assertEquals(((SFrame) ((AX25PacketView) packet).decode()).getControlType(), AX25Packet.SupervisoryFrame.ControlType.RR);
+    }
+
+    @Test
+    public void testView() {
+        byte[] data = UIFrame.create(AX25Call.create("ID-0"), AX25Call.create("K4DBZ-2"),
+                AX25Packet.Protocol.NO_LAYER3, "hello".getBytes(StandardCharsets.US_ASCII)).getPayload();
+        AX25PacketView view = new AX25PacketView(data);
+        assertEquals("ID-0", view.getDestination());
+        assertEquals(AX25Packet.FrameType.UI, view.getFrameType());
+        assertEquals(AX25Packet.Protocol.NO_LAYER3, view.getProtocol());
+        assertEquals("hello", StandardCharsets.US_ASCII.decode(view.getInfoSlice()).toString());
+        assertTrue(view.getRepeaterPaths().isEmpty());
+        assertEquals(AX25Packet.Command.COMMAND, view.getCommand());
+    }
+
+    @Test
+    public void testZeroCopy() {
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new KISSFrameDecoder(KISSFrameDecoderTest.portConfig(Collections.singletonMap("kiss.zero.copy", "true"))),
+                new AX25PacketDecoder()
+        );
+        ch.writeInbound(fromInts(192, 0, 150, 104, 136, 132, 180, 64, 228, 150, 104, 136, 132, 180, 64, 115, 17, 192));
+        PooledAX25PacketView view = ch.readInbound();
+        assertNotNull(view);
+        assertEquals(1, view.refCnt());
+        assertEquals("K4DBZ-9", view.getSource());
+        assertEquals(AX25Packet.FrameType.S, view.getFrameType());
+
+        // Frames for someone else are released by the filter
+        Map<String, Object> config = new HashMap<>();
+        config.put("node.call", "KN4ORB-2");
+        EmbeddedChannel filter = new EmbeddedChannel(new AX25PacketFilter(new PortConfigImpl(0, new MapConfiguration(config))));
+        assertFalse(filter.writeInbound(view.retain()));
+        assertEquals(1, view.refCnt());
+
+        // and ones for us once they've been decoded
+        assertEquals(AX25Packet.SupervisoryFrame.ControlType.RR, ((SFrame) view.decode()).getControlType());
+        assertTrue(view.release());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testMalformed() {
+        byte[] data = UIFrame.create(AX25Call.create("ID-0"), AX25Call.create("K4DBZ-2"),
+                AX25Packet.Protocol.NO_LAYER3, new byte[0]).getPayload();
+        EmbeddedChannel ch = new EmbeddedChannel(new AX25PacketDecoder());
+
+        // Cut off before the control byte
+        assertFalse(ch.writeInbound(new KISSFrame(0, KISS.Command.Data, Arrays.copyOf(data, 14))));
+        // A UI frame without its PID
+        assertFalse(ch.writeInbound(new KISSFrame(0, KISS.Command.Data, Arrays.copyOf(data, 15))));
+        // but the PID alone is enough
+        assertTrue(ch.writeInbound(new KISSFrame(0, KISS.Command.Data, Arrays.copyOf(data, 16))));
+        assertNotNull(ch.readInbound());
+        assertFalse(ch.writeInbound(new KISSFrame(0, KISS.Command.Data, Arrays.copyOf(data, 5))));
+
+        // Source address without its last address bit, so it runs off the end looking for repeaters
+        byte[] noLast = Arrays.copyOf(data, data.length);
+        noLast[13] &= ~0x01;
+        assertFalse(ch.writeInbound(new KISSFrame(0, KISS.Command.Data, noLast)));
+        ByteBuf buf = Unpooled.wrappedBuffer(noLast);
+        assertFalse(ch.writeInbound(new PooledKISSFrame(0, KISS.Command.Data, buf)));
+        assertEquals(0, buf.refCnt());
+
+        assertTrue(ch.writeInbound(new PooledKISSFrame(0, KISS.Command.Data, Unpooled.wrappedBuffer(data))));
+        AX25PacketView view = ch.readInbound();
+        assertEquals("K4DBZ-2", view.getSource());
+        assertEquals(AX25Packet.FrameType.UI, view.getFrameType());
+        assertFalse(ch.finish());
     }
 
     @Test
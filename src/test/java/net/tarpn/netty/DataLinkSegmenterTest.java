@@ -0,0 +1,82 @@
+package net.tarpn.netty;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.tarpn.config.PortConfig;
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.datalink.DataLinkPrimitive;
+import net.tarpn.packet.impl.ax25.AX25Call;
+import net.tarpn.packet.impl.ax25.AX25Packet.Protocol;
+import org.apache.commons.configuration2.MapConfiguration;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DataLinkSegmenterTest {
+
+    private static final AX25Call REMOTE = AX25Call.create("K4DBZ", 2);
+    private static final AX25Call LOCAL = AX25Call.create("KN4ORB", 1);
+
+    static PortConfig portConfig(int mergeDelay) {
+        Map<String, Object> config = new HashMap<>();
+        config.put("l2.paclen", 8);
+        config.put("l2.merge.delay", mergeDelay);
+        return new PortConfigImpl(0, new MapConfiguration(config));
+    }
+
+    @Test
+    public void testSplit() {
+        EmbeddedChannel ch = new EmbeddedChannel(new DataLinkSegmenter(portConfig(0)));
+        ch.writeOutbound(data("0123456789abcdefXYZ"));
+
+        assertData("01234567", ch.readOutbound());
+        assertData("89abcdef", ch.readOutbound());
+        assertData("XYZ", ch.readOutbound());
+        assertNull(ch.readOutbound());
+    }
+
+    @Test
+    public void testMerge() {
+        EmbeddedChannel ch = new EmbeddedChannel(new DataLinkSegmenter(portConfig(60000)));
+        ch.writeOutbound(data("abc"));
+        ch.writeOutbound(data("def"));
+        assertNull(ch.readOutbound());
+
+        ch.writeOutbound(data("ghi"));
+        assertData("abcdefgh", ch.readOutbound());
+        assertNull(ch.readOutbound());
+
+        // Anything else for the link pushes the rest out ahead of it
+        ch.writeOutbound(DataLinkPrimitive.newDisconnectRequest(REMOTE, LOCAL));
+        assertData("i", ch.readOutbound());
+        DataLinkPrimitive disc = ch.readOutbound();
+        assertEquals(DataLinkPrimitive.Type.DL_DISCONNECT, disc.getType());
+        assertNull(ch.readOutbound());
+    }
+
+    @Test
+    public void testPassThrough() {
+        EmbeddedChannel ch = new EmbeddedChannel(new DataLinkSegmenter(portConfig(60000)));
+        byte[] netrom = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        ch.writeOutbound(DataLinkPrimitive.newDataRequest(REMOTE, LOCAL, Protocol.NETROM, netrom));
+        DataLinkPrimitive dl = ch.readOutbound();
+        assertArrayEquals(netrom, dl.getLinkInfo().getInfo());
+        assertNull(ch.readOutbound());
+    }
+
+    private static DataLinkPrimitive data(String s) {
+        return DataLinkPrimitive.newDataRequest(REMOTE, LOCAL, Protocol.NO_LAYER3, s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void assertData(String expected, Object msg) {
+        DataLinkPrimitive dl = (DataLinkPrimitive) msg;
+        assertEquals(REMOTE, dl.getRemoteCall());
+        assertEquals(Protocol.NO_LAYER3, dl.getLinkInfo().getProtocol());
+        assertEquals(expected, new String(dl.getLinkInfo().getInfo(), StandardCharsets.US_ASCII));
+    }
+}
@@ -11,6 +11,7 @@ import org.apache.commons.configuration2.MapConfiguration;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -54,6 +55,28 @@ public class KISSFrameDecoderTest {
         assertEquals(frame.getPort(), 0);
     }
 
+    @Test
+    public void testPartialEscapedFrame() {
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSFrameDecoder(portConfig()));
+        ch.writeInbound(fromInts(192, 0, 1, 2, 3));
+        assertEquals(ch.inboundMessages().size(), 0);
+        ch.writeInbound(fromInts(4, 0xDB));
+        assertEquals(ch.inboundMessages().size(), 0);
+        ch.writeInbound(fromInts(0xDC, 5, 6));
+        assertEquals(ch.inboundMessages().size(), 0);
+        ch.writeInbound(fromInts(7, 192, 0, 8));
+        assertEquals(ch.inboundMessages().size(), 1);
+        KISSFrame frame = (KISSFrame) ch.inboundMessages().poll();
+        assertNotNull(frame);
+        assertArrayEquals(frame.getData(), new byte[]{1, 2, 3, 4, (byte) 0xC0, 5, 6, 7});
+
+        ch.writeInbound(fromInts(9, 192));
+        assertEquals(ch.inboundMessages().size(), 1);
+        frame = (KISSFrame) ch.inboundMessages().poll();
+        assertNotNull(frame);
+        assertArrayEquals(frame.getData(), new byte[]{8, 9});
+    }
+
     @Test
     public void testFENDSequence() {
         EmbeddedChannel ch = new EmbeddedChannel(new KISSFrameDecoder(portConfig()));
@@ -134,6 +157,56 @@ public class KISSFrameDecoderTest {
     }
 
 
+    @Test
+    public void testZeroCopyFrame() {
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSFrameDecoder(
+                portConfig(Collections.singletonMap("kiss.zero.copy", "true"))));
+        ByteBuf buf = fromInts(192, 0, 150, 104, 136, 132, 180, 64, 228, 150, 104, 136, 132, 180, 64, 115, 17, 192);
+        ch.writeInbound(buf);
+        assertEquals(ch.inboundMessages().size(), 1);
+        PooledKISSFrame frame = (PooledKISSFrame) ch.inboundMessages().poll();
+        assertNotNull(frame);
+        assertEquals(frame.getKissCommand(), KISS.Command.Data);
+        assertEquals(frame.getPort(), 0);
+        assertEquals(frame.content().readableBytes(), 15);
+        assertEquals(frame.content().getUnsignedByte(0), 150);
+        assertEquals(frame.content().getUnsignedByte(14), 17);
+        assertTrue(frame.release());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testZeroCopyEscapedFrame() {
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSFrameDecoder(
+                portConfig(Collections.singletonMap("kiss.zero.copy", "true"))));
+        ByteBuf buf = fromInts(192, 0, 1, 0xDB, 0xDC, 2, 0xDB, 0xDD, 3, 192);
+        ch.writeInbound(buf);
+        assertEquals(ch.inboundMessages().size(), 1);
+        PooledKISSFrame frame = (PooledKISSFrame) ch.inboundMessages().poll();
+        assertNotNull(frame);
+        assertArrayEquals(frame.getData(), new byte[]{1, (byte) 0xC0, 2, (byte) 0xDB, 3});
+        assertTrue(frame.release());
+    }
+
+    @Test
+    public void testZeroCopyChecksum() {
+        Map<String, String> config = new HashMap<>();
+        config.put("kiss.flags", "CHECKSUM");
+        config.put("kiss.zero.copy", "true");
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSFrameDecoder(portConfig(config)));
+        ByteBuf buf = fromInts(
+                0xc0, 0x96, 0x68, 0x88, 0x84, 0xb4, 0x40, 0xe4, 0x96,
+                0x9c, 0x68, 0x9e, 0xa4, 0x84, 0x65, 0xb1, 0xea, 0xc0);
+        ch.writeInbound(buf);
+        assertEquals(ch.inboundMessages().size(), 1);
+        PooledKISSFrame frame = (PooledKISSFrame) ch.inboundMessages().poll();
+        assertNotNull(frame);
+        // Command byte and checksum are stripped
+        assertEquals(frame.content().readableBytes(), 14);
+        assertTrue(frame.release());
+    }
+
+
     static ByteBuf fromInts(byte... values) {
         ByteBuf buf = Unpooled.buffer(values.length);
         for (int i = 0; i < values.length; i++) {
@@ -36,6 +36,28 @@ public class KISSTest {
         assertArrayEquals(frame.getData(), out.getData());
     }
 
+    @Test
+    public void testEncodeDecodeEscapes() {
+        // Put the special bytes on either side of an eight byte boundary
+        byte[] data = new byte[20];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        data[0] = (byte) 0xC0;
+        data[7] = (byte) 0xDB;
+        data[8] = (byte) 0xC0;
+        data[19] = (byte) 0xDB;
+        KISSFrame frame = new KISSFrame(0, KISS.Command.Data, data);
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSFrameEncoder(portConfig()), new KISSFrameDecoder(portConfig()));
+        ch.writeOutbound(frame);
+        ByteBuf encoded = ch.readOutbound();
+        assertEquals(data.length + 3 + 4, encoded.readableBytes());
+        ch.writeInbound(encoded);
+        KISSFrame out = ch.readInbound();
+        assertNotNull(out);
+        assertArrayEquals(data, out.getData());
+    }
+
     @Test
     public void testDecodeEncode() {
         int[] ints = new int[] {
@@ -0,0 +1,168 @@
+package net.tarpn.netty.app;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import net.tarpn.util.TimerWheel;
+import net.tarpn.util.Util;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BufferedContextTest {
+
+    private final DefaultEventLoop loop = new DefaultEventLoop();
+    private final TimerWheel timerWheel = new TimerWheel(loop);
+
+    @After
+    public void tearDown() {
+        loop.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    static class TestContext extends BufferedContext {
+        final List<String> frames = new CopyOnWriteArrayList<>();
+        final EventExecutor executor;
+        volatile boolean offLoop = false;
+        volatile boolean writable = true;
+        boolean closed = false;
+
+        TestContext(int frameSize, long flushDelayMs, TimerWheel timerWheel) {
+            super(frameSize, flushDelayMs, timerWheel);
+            this.executor = timerWheel.executor();
+        }
+
+        @Override
+        protected void writeFrame(byte[] frame) {
+            offLoop |= !executor.inEventLoop();
+            frames.add(Util.ascii(frame));
+        }
+
+        @Override
+        protected void closeChannel() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
+        }
+
+        @Override
+        public String remoteAddress() {
+            return "test";
+        }
+    }
+
+    /**
+     * Run something on the event loop, like an application reading from its channel would
+     */
+    private void onLoop(Runnable runnable) throws Exception {
+        loop.submit(runnable).sync();
+    }
+
+    private static void await(List<String> frames, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (frames.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        TestContext context = new TestContext(8, 60000, timerWheel);
+        onLoop(() -> {
+            context.write("PORTS:");
+            context.write("1: VHF");
+            context.write("2: UHF");
+            // Two full frames so far, the rest waits for a flush
+            assertEquals(2, context.frames.size());
+            assertEquals("PORTS:1:", context.frames.get(0));
+            assertEquals(" VHF2: U", context.frames.get(1));
+
+            context.flush();
+            assertEquals(3, context.frames.size());
+            assertEquals("HF", context.frames.get(2));
+
+            context.flush();
+            assertEquals(3, context.frames.size());
+        });
+        assertFalse(context.offLoop);
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        TestContext context = new TestContext(8, 60000, timerWheel);
+        onLoop(() -> {
+            context.write("Bye!");
+            context.close();
+            assertEquals(1, context.frames.size());
+            assertEquals("Bye!", context.frames.get(0));
+            assertTrue(context.closed);
+        });
+    }
+
+    @Test
+    public void testAutoFlush() throws Exception {
+        TestContext context = new TestContext(8, 20, timerWheel);
+        onLoop(() -> {
+            context.write("abc");
+            context.write("def");
+        });
+        await(context.frames, 1);
+        assertEquals(1, context.frames.size());
+        assertEquals("abcdef", context.frames.get(0));
+        // The timer fires on the channel's loop, like any other write
+        assertFalse(context.offLoop);
+    }
+
+    @Test
+    public void testOrdering() throws Exception {
+        TestContext context = new TestContext(8, 20, timerWheel);
+        CountDownLatch written = new CountDownLatch(1);
+        // While the loop is busy, another thread fills a frame. It has to wait for the loop, and a frame
+        // filled on the loop after it must not overtake it.
+        loop.execute(() -> {
+            try {
+                written.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            context.write("12345678");
+            context.write("xy");
+        });
+        context.write("abcdefgh");
+        written.countDown();
+
+        // Then the rest goes out when the timer fires
+        await(context.frames, 3);
+        assertEquals(Arrays.asList("abcdefgh", "12345678", "xy"), context.frames);
+        assertFalse(context.offLoop);
+    }
+
+    @Test
+    public void testHoldWhileUnwritable() throws Exception {
+        TestContext context = new TestContext(8, 60000, timerWheel);
+        onLoop(() -> {
+            context.writable = false;
+            context.write("abcdefgh12345678xy");
+            context.close();
+            // Nothing is pushed at a backed up link, and it doesn't close with data still held
+            assertEquals(0, context.frames.size());
+            assertFalse(context.closed);
+
+            context.writable = true;
+            context.writabilityChanged();
+            assertEquals(Arrays.asList("abcdefgh", "12345678", "xy"), context.frames);
+            assertTrue(context.closed);
+        });
+        assertFalse(context.offLoop);
+    }
+}
@@ -0,0 +1,71 @@
+package net.tarpn.netty.kiss;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.tarpn.config.PortConfig;
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.frame.impl.KISS;
+import net.tarpn.frame.impl.KISSFrame;
+import org.apache.commons.configuration2.MapConfiguration;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class KISSParameterControllerTest {
+
+    static PortConfig config() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("kiss.tx.delay", "30");
+        map.put("kiss.persist", "128");
+        map.put("kiss.slot.time", "10");
+        map.put("kiss.tx.tail", "2");
+        map.put("kiss.port", "3");
+        map.put("kiss.params.interval", "0");
+        return new PortConfigImpl(0, new MapConfiguration(map));
+    }
+
+    @Test
+    public void testSendOnActive() {
+        EmbeddedChannel channel = new EmbeddedChannel(new KISSParameterController(config()));
+        KISS.Command[] expected = new KISS.Command[]{
+                KISS.Command.TxDelay, KISS.Command.P, KISS.Command.SlotTime, KISS.Command.TxTail, KISS.Command.FullDuplex};
+        int[] values = new int[]{30, 128, 10, 2, 0};
+        for (int i = 0; i < expected.length; i++) {
+            KISSFrame frame = channel.readOutbound();
+            assertNotNull(frame);
+            assertEquals(3, frame.getPort());
+            assertEquals(expected[i], frame.getKissCommand());
+            assertArrayEquals(new byte[]{(byte) values[i]}, frame.getData());
+        }
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testAdjust() {
+        KISSParameterController controller = new KISSParameterController(config());
+
+        // Lots of retries, back off
+        assertTrue(controller.adjust(10, 5));
+        assertEquals(96, controller.getPersist());
+        assertEquals(11, controller.getSlotTime());
+        assertTrue(controller.adjust(10, 5));
+        assertEquals(72, controller.getPersist());
+        assertEquals(12, controller.getSlotTime());
+
+        // Somewhere in between, leave it alone
+        assertFalse(controller.adjust(10, 1));
+
+        // Clean channel, recover but never past the configured values
+        assertTrue(controller.adjust(100, 0));
+        assertEquals(88, controller.getPersist());
+        assertEquals(11, controller.getSlotTime());
+        for (int i = 0; i < 10; i++) {
+            controller.adjust(100, 0);
+        }
+        assertEquals(128, controller.getPersist());
+        assertEquals(10, controller.getSlotTime());
+        assertFalse(controller.adjust(100, 0));
+    }
+}
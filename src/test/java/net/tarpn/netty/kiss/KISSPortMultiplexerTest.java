@@ -0,0 +1,125 @@
+package net.tarpn.netty.kiss;
+
+import io.netty.channel.*;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import net.tarpn.config.PortConfig;
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.frame.impl.KISS;
+import net.tarpn.frame.impl.KISSFrame;
+import net.tarpn.util.Util;
+import org.apache.commons.configuration2.MapConfiguration;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class KISSPortMultiplexerTest {
+
+    private final DefaultEventLoopGroup childGroup = new DefaultEventLoopGroup(1);
+    private final Map<Integer, Channel> children = new ConcurrentHashMap<>();
+    private final Map<Integer, BlockingQueue<KISSFrame>> received = new ConcurrentHashMap<>();
+    private final CountDownLatch registered = new CountDownLatch(2);
+
+    @After
+    public void tearDown() {
+        childGroup.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A parent channel with ports 1 and 2 on HDLC ports 0 and 3
+     */
+    private EmbeddedChannel newParent(ChannelHandler... parentHandlers) throws Exception {
+        Map<Integer, PortConfig> portConfigs = new HashMap<>();
+        portConfigs.put(0, new PortConfigImpl(1, new MapConfiguration(Collections.emptyMap())));
+        portConfigs.put(3, new PortConfigImpl(2, new MapConfiguration(Collections.emptyMap())));
+        EmbeddedChannel parent = new EmbeddedChannel(parentHandlers);
+        parent.pipeline().addLast(new KISSPortMultiplexer(portConfigs, childGroup, portConfig ->
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+                        children.put(portConfig.getPortNumber(), ctx.channel());
+                        received.put(portConfig.getPortNumber(), new LinkedBlockingQueue<>());
+                        registered.countDown();
+                        super.channelRegistered(ctx);
+                    }
+
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        received.get(portConfig.getPortNumber()).add((KISSFrame) msg);
+                    }
+                }));
+        // The multiplexer was added after the parent went active
+        parent.pipeline().fireChannelActive();
+        assertTrue(registered.await(5, TimeUnit.SECONDS));
+        return parent;
+    }
+
+    private static KISSFrame frame(int hdlcPort, String data) {
+        return new KISSFrame(hdlcPort, KISS.Command.Data, Util.ascii(data));
+    }
+
+    @Test
+    public void testDemultiplex() throws Exception {
+        EmbeddedChannel parent = newParent();
+        parent.writeInbound(frame(3, "for port 2"));
+        parent.writeInbound(frame(0, "for port 1"));
+        parent.writeInbound(frame(5, "for nobody"));
+
+        KISSFrame frame = received.get(2).poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        assertEquals("for port 2", Util.ascii(frame.getData()));
+        frame = received.get(1).poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        assertEquals("for port 1", Util.ascii(frame.getData()));
+        assertTrue(received.get(1).isEmpty());
+        assertTrue(received.get(2).isEmpty());
+        assertNull(parent.readInbound());
+    }
+
+    @Test
+    public void testWriteThroughChild() throws Exception {
+        EmbeddedChannel parent = newParent();
+        Channel child = children.get(2);
+        ChannelFuture future = child.writeAndFlush(frame(3, "hello"));
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccess());
+
+        KISSFrame written = parent.readOutbound();
+        assertNotNull(written);
+        assertEquals(3, written.getPort());
+        assertEquals("hello", Util.ascii(written.getData()));
+    }
+
+    @Test
+    public void testParentWriteFailure() throws Exception {
+        EmbeddedChannel parent = newParent(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new IOException("TNC went away"));
+            }
+        });
+        Channel child = children.get(1);
+        ChannelFuture future = child.writeAndFlush(frame(0, "hello"));
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isSuccess());
+        assertTrue(future.cause() instanceof IOException);
+
+        // Later writes aren't held up by the failed one
+        future = child.writeAndFlush(frame(0, "again"));
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isSuccess());
+        assertNull(parent.readOutbound());
+    }
+}
@@ -0,0 +1,172 @@
+package net.tarpn.netty.kiss;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.tarpn.config.PortConfig;
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.frame.impl.KISS;
+import net.tarpn.frame.impl.KISSFrame;
+import net.tarpn.packet.impl.ax25.AX25Call;
+import net.tarpn.packet.impl.ax25.AX25Packet;
+import net.tarpn.packet.impl.ax25.AX25Packet.SupervisoryFrame.ControlType;
+import net.tarpn.packet.impl.ax25.IFrame;
+import net.tarpn.packet.impl.ax25.SFrame;
+import net.tarpn.util.Util;
+import org.apache.commons.configuration2.MapConfiguration;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class KISSTransmitSchedulerTest {
+
+    static KISSFrame rr(String remote, int nr, boolean pf) {
+        return frame(SFrame.create(AX25Call.create(remote), AX25Call.create("K4DBZ-2"),
+                AX25Packet.Command.RESPONSE, ControlType.RR, nr, pf));
+    }
+
+    static KISSFrame rnr(String remote, int nr) {
+        return frame(SFrame.create(AX25Call.create(remote), AX25Call.create("K4DBZ-2"),
+                AX25Packet.Command.RESPONSE, ControlType.RNR, nr, false));
+    }
+
+    static KISSFrame info(String remote, int nr) {
+        return frame(IFrame.create(AX25Call.create(remote), AX25Call.create("K4DBZ-2"),
+                AX25Packet.Command.COMMAND, (byte) 0, (byte) nr, false,
+                AX25Packet.Protocol.NO_LAYER3, Util.ascii("hello")));
+    }
+
+    static KISSFrame frame(AX25Packet packet) {
+        return new KISSFrame(0, KISS.Command.Data, packet.getPayload());
+    }
+
+    /**
+     * At 1200 baud each byte takes 8.3ms, so one of our test frames is over 200ms of airtime
+     */
+    static PortConfig config(int backlogMs) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("kiss.tx.baud", "1200");
+        map.put("kiss.tx.backlog", Integer.toString(backlogMs));
+        return new PortConfigImpl(0, new MapConfiguration(map));
+    }
+
+    /**
+     * Run the channel's scheduled tasks until a frame is written, or give up
+     */
+    static KISSFrame awaitOutbound(EmbeddedChannel ch, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            ch.runPendingTasks();
+            KISSFrame frame = ch.readOutbound();
+            if (frame != null) {
+                return frame;
+            }
+            Thread.sleep(5);
+        }
+        return null;
+    }
+
+    @Test
+    public void testPacing() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSTransmitScheduler(config(0)));
+        long start = System.nanoTime();
+        ch.write(info("KN4ORB-2", 1));
+        ch.writeAndFlush(info("KN4ORB-2", 2));
+
+        // The first goes straight to the TNC, the second waits until the first has been sent
+        assertNotNull(ch.readOutbound());
+        assertNull(ch.readOutbound());
+        assertNotNull(awaitOutbound(ch, 2000));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testBacklog() {
+        // With a second of backlog allowed, both frames go right away
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSTransmitScheduler(config(1000)));
+        ch.write(info("KN4ORB-2", 1));
+        ch.writeAndFlush(info("KN4ORB-2", 2));
+        assertNotNull(ch.readOutbound());
+        assertNotNull(ch.readOutbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testWatermark() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSTransmitScheduler(config(1000)));
+        ch.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        ChannelFuture future = ch.writeAndFlush(info("KN4ORB-2", 1));
+        assertNull(ch.readOutbound());
+        assertFalse(future.isDone());
+
+        ch.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        assertNotNull(awaitOutbound(ch, 2000));
+        assertTrue(future.isSuccess());
+    }
+
+    @Test
+    public void testParentWritability() throws Exception {
+        EmbeddedChannel parent = new EmbeddedChannel();
+        EmbeddedChannel ch = new EmbeddedChannel(parent, DefaultChannelId.newInstance(), true, false,
+                new KISSTransmitScheduler(config(1000)));
+        parent.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        ch.writeAndFlush(info("KN4ORB-2", 1));
+        ch.runPendingTasks();
+        assertNull(ch.readOutbound());
+
+        // We aren't told when the parent drains, so this is picked up by polling
+        parent.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        assertNotNull(awaitOutbound(ch, 2000));
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new KISSTransmitScheduler(config(0)));
+        ch.writeAndFlush(info("KN4ORB-2", 1));
+        assertNotNull(ch.readOutbound());
+
+        // While the I frame is on the air, acks pile up and only the last one is worth sending
+        ChannelFuture first = ch.writeAndFlush(rr("KN4ORB-2", 2, false));
+        ChannelFuture other = ch.writeAndFlush(rr("KN4ORB-3", 2, false));
+        ChannelFuture second = ch.writeAndFlush(rnr("KN4ORB-2", 3));
+        assertTrue(first.isSuccess());
+        assertFalse(second.isDone());
+
+        KISSFrame frame = awaitOutbound(ch, 2000);
+        assertNotNull(frame);
+        assertArrayEquals(rr("KN4ORB-3", 2, false).getData(), frame.getData());
+        frame = awaitOutbound(ch, 2000);
+        assertNotNull(frame);
+        assertArrayEquals(rnr("KN4ORB-2", 3).getData(), frame.getData());
+        assertTrue(other.isSuccess());
+        assertTrue(second.isSuccess());
+    }
+
+    @Test
+    public void testNewerSupervisorySupersedes() {
+        assertTrue(KISSTransmitScheduler.supersedes(rr("KN4ORB-2", 2, false), rr("KN4ORB-2", 1, false)));
+        assertTrue(KISSTransmitScheduler.supersedes(rnr("KN4ORB-2", 2), rr("KN4ORB-2", 1, false)));
+        assertTrue(KISSTransmitScheduler.supersedes(rr("KN4ORB-2", 2, false), rnr("KN4ORB-2", 1)));
+    }
+
+    @Test
+    public void testInfoSupersedesRR() {
+        assertTrue(KISSTransmitScheduler.supersedes(info("KN4ORB-2", 2), rr("KN4ORB-2", 1, false)));
+        assertFalse(KISSTransmitScheduler.supersedes(info("KN4ORB-2", 2), rnr("KN4ORB-2", 1)));
+    }
+
+    @Test
+    public void testKeepOtherFrames() {
+        // Different link
+        assertFalse(KISSTransmitScheduler.supersedes(rr("KN4ORB-2", 2, false), rr("KN4ORB-3", 1, false)));
+        // Poll/final needs to get through
+        assertFalse(KISSTransmitScheduler.supersedes(rr("KN4ORB-2", 2, false), rr("KN4ORB-2", 1, true)));
+        // Never drop I frames
+        assertFalse(KISSTransmitScheduler.supersedes(rr("KN4ORB-2", 2, false), info("KN4ORB-2", 1)));
+    }
+}
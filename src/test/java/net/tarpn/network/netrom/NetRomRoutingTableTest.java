@@ -0,0 +1,198 @@
+package net.tarpn.network.netrom;
+
+import net.tarpn.config.impl.NetRomConfigImpl;
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.network.netrom.NetRomNodes.NodeDestination;
+import net.tarpn.network.netrom.NetRomRoutingTable.Neighbor;
+import net.tarpn.packet.impl.ax25.AX25Call;
+import org.apache.commons.configuration2.MapConfiguration;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NetRomRoutingTableTest {
+
+  static final AX25Call US = AX25Call.create("K4DBZ", 2);
+  static final AX25Call NEIGHBOR_A = AX25Call.create("N1AAA", 2);
+  static final AX25Call NEIGHBOR_B = AX25Call.create("N1BBB", 2);
+  static final AX25Call DEST = AX25Call.create("N3XXX", 2);
+
+  static NetRomRoutingTable newRoutingTable() {
+    Map<String, Object> config = new HashMap<>();
+    config.put("node.call", US.toString());
+    config.put("node.alias", "DAVID");
+    // Tests take the changes themselves, rather than waiting for the hold-down
+    config.put("netrom.nodes.holddown", 60000);
+    NetRomConfigImpl netRomConfig = new NetRomConfigImpl(new MapConfiguration(config));
+    return new NetRomRoutingTable(netRomConfig, portNum -> {
+      Map<String, Object> portConfig = new HashMap<>();
+      // Port 2 is the worse of the two
+      portConfig.put("port.quality", portNum == 1 ? 255 : 192);
+      return new PortConfigImpl(portNum, new MapConfiguration(portConfig));
+    }, neighbor -> {});
+  }
+
+  @Test
+  public void testBestRouteFirst() {
+    NetRomRoutingTable router = newRoutingTable();
+    router.updateNodes(NEIGHBOR_B, 2, new NetRomNodes("BBB", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_B, 200))));
+    assertEquals(Collections.singletonList(NEIGHBOR_B), router.routePacket(DEST));
+
+    router.updateNodes(NEIGHBOR_A, 1, new NetRomNodes("AAA", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_A, 200))));
+    assertEquals(Arrays.asList(NEIGHBOR_A, NEIGHBOR_B), router.routePacket(DEST));
+    assertEquals(Collections.singletonList(NEIGHBOR_A), router.routePacket(NEIGHBOR_A));
+    List<Neighbor> neighbors = router.routeToNeighbors(DEST);
+    assertEquals(2, neighbors.size());
+    assertEquals(NEIGHBOR_A, neighbors.get(0).getNodeCall());
+    assertEquals(1, neighbors.get(0).getPort());
+    assertEquals(2, neighbors.get(1).getPort());
+    // Resolved once per update, not per packet
+    assertSame(neighbors, router.routeToNeighbors(DEST));
+    assertTrue(router.routePacket(AX25Call.create("N9ZZZ", 0)).isEmpty());
+  }
+
+  @Test
+  public void testStreaming() {
+    NetRomRoutingTable router = newRoutingTable();
+    byte[] nodesInfo = NetRomNodes.write(new NetRomNodes("AAA", Arrays.asList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_A, 200),
+        // Routes back through us are ignored
+        new NodeDestination(AX25Call.create("N3YYY", 0), "YYY", US, 200))));
+    router.updateNodes(NEIGHBOR_A, 1, nodesInfo);
+
+    assertEquals(Collections.singletonList(NEIGHBOR_A), router.routePacket(DEST));
+    assertEquals("XXX", router.getDestinations().get(DEST).getNodeAlias());
+    assertEquals("AAA", router.getDestinations().get(NEIGHBOR_A).getNodeAlias());
+    assertTrue(router.routePacket(AX25Call.create("N3YYY", 0)).isEmpty());
+  }
+
+  @Test
+  public void testPrune() {
+    NetRomRoutingTable router = newRoutingTable();
+    router.updateNodes(NEIGHBOR_A, 1, new NetRomNodes("AAA", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_A, 200))));
+    router.addNeighbor(NEIGHBOR_B, 2);
+    assertEquals(Collections.singletonList(NEIGHBOR_B), router.routePacket(NEIGHBOR_B));
+
+    for (int i = 0; i < 6; i++) {
+      router.pruneRoutes();
+    }
+    assertTrue(router.routePacket(DEST).isEmpty());
+    assertTrue(router.routePacket(NEIGHBOR_A).isEmpty());
+    // A neighbor we've only heard from, but not had NODES from, is still reachable directly
+    assertEquals(Collections.singletonList(NEIGHBOR_B), router.routePacket(NEIGHBOR_B));
+  }
+
+  @Test
+  public void testTriggeredUpdates() {
+    NetRomRoutingTable router = newRoutingTable();
+    NetRomNodes fromB = new NetRomNodes("BBB", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_B, 200)));
+    router.updateNodes(NEIGHBOR_B, 2, fromB);
+    assertEquals(2, router.takeChanges().getDestinationList().size());
+    assertNull(router.takeChanges());
+
+    // Hearing the same thing again isn't news
+    router.updateNodes(NEIGHBOR_B, 2, fromB);
+    assertNull(router.takeChanges());
+
+    // A better route through A, and A itself
+    router.updateNodes(NEIGHBOR_A, 1, new NetRomNodes("AAA", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_A, 200))));
+    NetRomNodes changes = router.takeChanges();
+    assertEquals(2, changes.getDestinationList().size());
+    NodeDestination toDest = find(changes, DEST);
+    assertEquals(NEIGHBOR_A, toDest.getBestNeighborNode());
+    assertEquals(199, toDest.getQuality());
+
+    // A loses its route, so we go back to B
+    router.updateNodes(NEIGHBOR_A, 1, new NetRomNodes("AAA", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_A, 0))));
+    assertEquals(Collections.singletonList(NEIGHBOR_B), router.routePacket(DEST));
+    changes = router.takeChanges();
+    assertEquals(1, changes.getDestinationList().size());
+    toDest = find(changes, DEST);
+    assertEquals(NEIGHBOR_B, toDest.getBestNeighborNode());
+    assertEquals(150, toDest.getQuality());
+
+    // Once the routes are too old to advertise, they're withdrawn
+    for (int i = 0; i < 3; i++) {
+      router.pruneRoutes();
+    }
+    changes = router.takeChanges();
+    assertEquals(3, changes.getDestinationList().size());
+    changes.getDestinationList().forEach(dest -> assertEquals(0, dest.getQuality()));
+    assertNull(router.takeChanges());
+  }
+
+  @Test
+  public void testFullBroadcast() {
+    NetRomRoutingTable router = newRoutingTable();
+    router.updateNodes(NEIGHBOR_B, 2, new NetRomNodes("BBB", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_B, 200))));
+    // The first broadcast covers everything heard so far, so there's nothing left to trigger
+    assertEquals(2, router.getNodes().getDestinationList().size());
+    assertNull(router.takeChanges());
+
+    // Only what changes after the broadcast goes out in a triggered update
+    router.updateNodes(NEIGHBOR_A, 1, new NetRomNodes("AAA", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_A, 200))));
+    router.getNodes();
+    assertNull(router.takeChanges());
+    router.updateNodes(NEIGHBOR_A, 1, new NetRomNodes("AAA", Collections.singletonList(
+        new NodeDestination(DEST, "XXX", NEIGHBOR_A, 0))));
+    NetRomNodes changes = router.takeChanges();
+    assertEquals(1, changes.getDestinationList().size());
+    assertEquals(NEIGHBOR_B, find(changes, DEST).getBestNeighborNode());
+
+    // A broadcast can't withdraw a lost destination, so that's still sent
+    for (int i = 0; i < 3; i++) {
+      router.pruneRoutes();
+    }
+    assertTrue(router.getNodes().getDestinationList().isEmpty());
+    changes = router.takeChanges();
+    assertEquals(3, changes.getDestinationList().size());
+    changes.getDestinationList().forEach(dest -> assertEquals(0, dest.getQuality()));
+  }
+
+  private static NodeDestination find(NetRomNodes nodes, AX25Call destCall) {
+    return nodes.getDestinationList().stream()
+        .filter(dest -> dest.getDestNode().equals(destCall))
+        .findFirst()
+        .orElseThrow(AssertionError::new);
+  }
+
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    NetRomRoutingTable router = newRoutingTable();
+    AtomicBoolean done = new AtomicBoolean(false);
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 500; i++) {
+        router.updateNodes(NEIGHBOR_A, 1, new NetRomNodes("AAA", Arrays.asList(
+            new NodeDestination(DEST, "XXX", NEIGHBOR_A, 200),
+            new NodeDestination(AX25Call.create("N3YYY", i % 16), "YYY", NEIGHBOR_A, 100))));
+        router.pruneRoutes();
+      }
+      done.set(true);
+    });
+    writer.start();
+    // Routing while the table changes underneath never fails, and always sees a whole route list
+    while (!done.get()) {
+      List<AX25Call> routes = router.routePacket(DEST);
+      assertTrue(routes.isEmpty() || routes.get(0).equals(NEIGHBOR_A));
+    }
+    writer.join();
+  }
+}
@@ -0,0 +1,59 @@
+package net.tarpn.packet.impl.ax25;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class AX25CallTest {
+
+  static byte[] bytes(AX25Call call, int flags) {
+    ByteBuffer buffer = ByteBuffer.allocate(7);
+    call.write(buffer::put, flags);
+    return buffer.array();
+  }
+
+  @Test
+  public void testReadWrite() {
+    AX25Call call = AX25Call.create("K4DBZ", 2);
+    int flags = SSIDFlags.C | SSIDFlags.RR | SSIDFlags.LAST;
+    byte[] raw = bytes(call, flags);
+    assertEquals(flags, SSIDFlags.of(raw[6]));
+    AX25Call read = AX25Call.read(ByteBuffer.wrap(raw));
+    assertEquals("K4DBZ", read.getCall());
+    assertEquals(2, read.getSSID());
+    assertEquals(call, read);
+    assertArrayEquals(bytes(call, SSIDFlags.NONE), bytes(read, SSIDFlags.NONE));
+  }
+
+  @Test
+  public void testCanonical() {
+    AX25Call call = AX25Call.create("K4DBZ", 9);
+    AX25Call first = AX25Call.read(ByteBuffer.wrap(bytes(call, SSIDFlags.NONE)));
+    AX25Call second = AX25Call.read(ByteBuffer.wrap(bytes(call, SSIDFlags.C | SSIDFlags.LAST)));
+    assertSame(first, second);
+  }
+
+  @Test
+  public void testEquality() {
+    AX25Call a = AX25Call.create("k4dbz-2");
+    AX25Call b = AX25Call.create("K4DBZ", 2);
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertNotEquals(a, AX25Call.create("K4DBZ-3"));
+    assertNotEquals(a, AX25Call.create("K4DB-2"));
+    assertTrue(a.callMatches(AX25Call.create("K4DBZ-3")));
+    assertFalse(a.callMatches(AX25Call.create("K4DB-2")));
+  }
+
+  @Test
+  public void testFrameFlags() {
+    AX25Call dest = AX25Call.create("K4DBZ-2");
+    AX25Call source = AX25Call.create("KN4ORB-1");
+    UFrame frame = UFrame.create(dest, source, AX25Packet.Command.COMMAND, AX25Packet.UnnumberedFrame.ControlType.SABM, true);
+    assertEquals(SSIDFlags.C, frame.getDestFlags());
+    assertEquals(SSIDFlags.LAST, frame.getSourceFlags());
+    assertEquals(AX25Packet.Command.COMMAND, frame.getCommand());
+  }
+}
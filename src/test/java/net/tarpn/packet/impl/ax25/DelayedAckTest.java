@@ -0,0 +1,112 @@
+package net.tarpn.packet.impl.ax25;
+
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.packet.impl.ax25.AX25Packet.Command;
+import net.tarpn.packet.impl.ax25.AX25Packet.Protocol;
+import net.tarpn.packet.impl.ax25.AX25Packet.SupervisoryFrame;
+import net.tarpn.packet.impl.ax25.AX25Packet.UnnumberedFrame;
+import net.tarpn.packet.impl.ax25.handlers.AwaitingReleaseStateHandler;
+import net.tarpn.packet.impl.ax25.handlers.ConnectedStateHandler;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DelayedAckTest {
+
+  private static final AX25Call REMOTE = AX25Call.create("K4DBZ", 2);
+  private static final AX25Call LOCAL = AX25Call.create("KN4ORB", 1);
+
+  private final List<AX25StateEvent> events = new ArrayList<>();
+  private final List<AX25Packet> outgoing = new ArrayList<>();
+  private final ConnectedStateHandler handler = new ConnectedStateHandler();
+
+  private AX25State newState() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty("l2.ack.delay", 60000);
+    AX25State state = new AX25State("test", REMOTE, LOCAL, new PortConfigImpl(1, config), events::add);
+    state.setState(AX25State.State.CONNECTED);
+    return state;
+  }
+
+  @Test
+  public void testPiggyback() {
+    AX25State state = newState();
+    handler.onEvent(state, AX25StateEvent.createIncomingEvent(incoming(0, false), AX25StateEvent.Type.AX25_INFO), outgoing::add);
+    assertTrue(outgoing.isEmpty());
+    assertTrue(state.isAckPending());
+
+    // We have something to say before T2 runs out, so the ack goes with it
+    handler.onEvent(state, AX25StateEvent.createDataEvent(REMOTE, Protocol.NO_LAYER3, bytes("reply")), outgoing::add);
+    handler.onEvent(state, events.remove(events.size() - 1), outgoing::add);
+    assertEquals(1, outgoing.size());
+    IFrame iFrame = (IFrame) outgoing.get(0);
+    assertEquals(1, iFrame.getReceiveSequenceNumber());
+    assertFalse(state.isAckPending());
+
+    outgoing.clear();
+    handler.onEvent(state, AX25StateEvent.createT2ExpireEvent(REMOTE), outgoing::add);
+    assertTrue(outgoing.isEmpty());
+  }
+
+  @Test
+  public void testStandaloneAck() {
+    AX25State state = newState();
+    handler.onEvent(state, AX25StateEvent.createIncomingEvent(incoming(0, false), AX25StateEvent.Type.AX25_INFO), outgoing::add);
+    handler.onEvent(state, AX25StateEvent.createIncomingEvent(incoming(1, false), AX25StateEvent.Type.AX25_INFO), outgoing::add);
+    assertTrue(outgoing.isEmpty());
+
+    // Nothing to send, so one RR covers both frames
+    handler.onEvent(state, AX25StateEvent.createT2ExpireEvent(REMOTE), outgoing::add);
+    assertEquals(1, outgoing.size());
+    SFrame rr = (SFrame) outgoing.get(0);
+    assertEquals(SupervisoryFrame.ControlType.RR, rr.getControlType());
+    assertEquals(2, rr.getReceiveSequenceNumber());
+    assertFalse(state.isAckPending());
+  }
+
+  @Test
+  public void testPoll() {
+    AX25State state = newState();
+    handler.onEvent(state, AX25StateEvent.createIncomingEvent(incoming(0, true), AX25StateEvent.Type.AX25_INFO), outgoing::add);
+    // A poll is answered right away
+    assertEquals(1, outgoing.size());
+    SFrame rr = (SFrame) outgoing.get(0);
+    assertTrue(rr.isPollOrFinalSet());
+    assertEquals(1, rr.getReceiveSequenceNumber());
+    assertFalse(state.isAckPending());
+  }
+
+  @Test
+  public void testDisconnect() {
+    AX25State state = newState();
+    handler.onEvent(state, AX25StateEvent.createIncomingEvent(incoming(0, false), AX25StateEvent.Type.AX25_INFO), outgoing::add);
+    assertTrue(state.isAckPending());
+
+    AX25State.State next = handler.onEvent(state, AX25StateEvent.createDisconnectEvent(REMOTE), outgoing::add);
+    assertEquals(AX25State.State.AWAITING_RELEASE, next);
+    assertFalse(state.isAckPending());
+    assertEquals(1, outgoing.size());
+    assertEquals(UnnumberedFrame.ControlType.DISC, ((UFrame) outgoing.get(0)).getControlType());
+
+    // A T2 that fired anyway doesn't give up on the release
+    state.setState(next);
+    outgoing.clear();
+    next = new AwaitingReleaseStateHandler().onEvent(state, AX25StateEvent.createT2ExpireEvent(REMOTE), outgoing::add);
+    assertEquals(AX25State.State.AWAITING_RELEASE, next);
+    assertTrue(outgoing.isEmpty());
+  }
+
+  private static IFrame incoming(int ns, boolean poll) {
+    return IFrame.create(LOCAL, REMOTE, Command.COMMAND, (byte) ns, (byte) 0, poll, Protocol.NO_LAYER3,
+        bytes("frame " + ns));
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+}
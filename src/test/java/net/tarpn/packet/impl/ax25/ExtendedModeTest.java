@@ -0,0 +1,120 @@
+package net.tarpn.packet.impl.ax25;
+
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.datalink.DataLinkPrimitive;
+import net.tarpn.packet.impl.AX25PacketReader;
+import net.tarpn.packet.impl.ax25.AX25Packet.Command;
+import net.tarpn.packet.impl.ax25.AX25Packet.Protocol;
+import net.tarpn.packet.impl.ax25.AX25Packet.SupervisoryFrame;
+import net.tarpn.packet.impl.ax25.handlers.ConnectedStateHandler;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ExtendedModeTest {
+
+  private static final AX25Call REMOTE = AX25Call.create("K4DBZ", 2);
+  private static final AX25Call LOCAL = AX25Call.create("KN4ORB", 1);
+
+  @Test
+  public void testIFrame() {
+    byte[] info = "hello".getBytes(StandardCharsets.US_ASCII);
+    IFrame iFrame = IFrame.create(REMOTE, LOCAL, Command.COMMAND, (byte) 100, (byte) 127, true,
+        Protocol.NO_LAYER3, info, true);
+    IFrame parsed = (IFrame) AX25PacketReader.parse(iFrame.getPayload(), true);
+    assertTrue(parsed.isExtended());
+    assertEquals(100, parsed.getSendSequenceNumber());
+    assertEquals(127, parsed.getReceiveSequenceNumber());
+    assertTrue(parsed.isPollBitSet());
+    assertEquals(Protocol.NO_LAYER3, parsed.getProtocol());
+    assertArrayEquals(info, parsed.getInfo());
+  }
+
+  @Test
+  public void testSFrame() {
+    SFrame rej = SFrame.create(REMOTE, LOCAL, Command.RESPONSE, SupervisoryFrame.ControlType.REJ, 77, true, true);
+    SFrame parsed = (SFrame) AX25PacketReader.parse(rej.getPayload(), true);
+    assertTrue(parsed.isExtended());
+    assertEquals(SupervisoryFrame.ControlType.REJ, parsed.getControlType());
+    assertEquals(77, parsed.getReceiveSequenceNumber());
+    assertTrue(parsed.isPollOrFinalSet());
+
+    // Modulo 8 is unchanged
+    SFrame rr = SFrame.create(REMOTE, LOCAL, Command.RESPONSE, SupervisoryFrame.ControlType.RR, 5, false);
+    parsed = (SFrame) AX25PacketReader.parse(rr.getPayload());
+    assertFalse(parsed.isExtended());
+    assertEquals(SupervisoryFrame.ControlType.RR, parsed.getControlType());
+    assertEquals(5, parsed.getReceiveSequenceNumber());
+  }
+
+  @Test
+  public void testWindow() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty("l2.window", 32);
+    AX25State state = new AX25State("test", REMOTE, LOCAL, new PortConfigImpl(1, config), event -> {});
+
+    // Modulo 8 caps the window at 7
+    assertEquals(7, state.getWindowSize());
+    state.setExtended(true);
+    assertEquals(32, state.getWindowSize());
+
+    // Wrap around the end of the sequence space
+    state.setAcknowledgeState((byte) 120);
+    state.setSendState(120 + 31);
+    assertFalse(state.windowExceeded());
+    assertTrue(state.isValidNR(120));
+    assertTrue(state.isValidNR(2));
+    assertTrue(state.isValidNR((120 + 31) % 128));
+    assertFalse(state.isValidNR(24));
+    assertFalse(state.isValidNR(119));
+    state.incrementSendState();
+    assertTrue(state.windowExceeded());
+  }
+
+  @Test
+  public void testSelectiveReject() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty("l2.window", 32);
+    config.setProperty("l2.ack.delay", 60000);
+    AX25State state = new AX25State("test", REMOTE, LOCAL, new PortConfigImpl(1, config), event -> {});
+    state.setExtended(true);
+    state.setState(AX25State.State.CONNECTED);
+    ConnectedStateHandler handler = new ConnectedStateHandler();
+    List<AX25Packet> outgoing = new ArrayList<>();
+
+    // Frame 1 and 2 are lost
+    for (int ns : new int[]{0, 3, 4}) {
+      handler.onEvent(state, AX25StateEvent.createIncomingEvent(incoming(ns), AX25StateEvent.Type.AX25_INFO), outgoing::add);
+    }
+    assertEquals(1, state.getReceiveState());
+    assertEquals(2, outgoing.size());
+    for (int i = 0; i < 2; i++) {
+      SFrame srej = (SFrame) outgoing.get(i);
+      assertEquals(SupervisoryFrame.ControlType.SREJ, srej.getControlType());
+      assertEquals(i + 1, srej.getReceiveSequenceNumber());
+    }
+
+    outgoing.clear();
+    for (int ns : new int[]{2, 1}) {
+      handler.onEvent(state, AX25StateEvent.createIncomingEvent(incoming(ns), AX25StateEvent.Type.AX25_INFO), outgoing::add);
+    }
+    // Nothing asked for twice, and everything delivered in order
+    assertTrue(outgoing.isEmpty());
+    assertEquals(5, state.getReceiveState());
+    for (int ns = 0; ns < 5; ns++) {
+      DataLinkPrimitive dl = state.pollDLEvents();
+      assertArrayEquals(("frame " + ns).getBytes(StandardCharsets.US_ASCII), dl.getLinkInfo().getInfo());
+    }
+    assertNull(state.pollDLEvents());
+  }
+
+  private static IFrame incoming(int ns) {
+    return IFrame.create(LOCAL, REMOTE, Command.COMMAND, (byte) ns, (byte) 0, false, Protocol.NO_LAYER3,
+        ("frame " + ns).getBytes(StandardCharsets.US_ASCII), true);
+  }
+}
@@ -0,0 +1,81 @@
+package net.tarpn.packet.impl.ax25;
+
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.packet.impl.ax25.AX25Packet.Command;
+import net.tarpn.packet.impl.ax25.AX25Packet.Protocol;
+import net.tarpn.util.TimerWheel;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RoundTripTimeTest {
+
+  private static final AX25Call REMOTE = AX25Call.create("K4DBZ", 2);
+  private static final AX25Call LOCAL = AX25Call.create("KN4ORB", 1);
+
+  private static AX25State newState() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty("l2.rtt", 1000);
+    config.setProperty("l2.retry.timeout.min", 100);
+    config.setProperty("l2.retry.timeout.max", 10000);
+    return new AX25State("test", REMOTE, LOCAL, new PortConfigImpl(1, config), event -> {});
+  }
+
+  @Test
+  public void testEstimator() {
+    AX25State state = newState();
+    // Before any samples, SRT=l2.rtt and RTTVAR=SRT/2
+    assertEquals(1000 + 4 * 500, state.computeT1());
+
+    state.sampleRTT(200);
+    assertEquals(200, state.getSRT());
+    assertEquals(100, state.getRTTVAR());
+    assertEquals(600, state.computeT1());
+
+    // A steady link converges on its round trip time
+    for (int i = 0; i < 50; i++) {
+      state.sampleRTT(200);
+    }
+    assertEquals(200, state.getSRT());
+    assertEquals(0, state.getRTTVAR());
+    // but leaves room for the timer's granularity
+    assertEquals(200 + TimerWheel.DEFAULT_TICK_MS, state.computeT1());
+  }
+
+  @Test
+  public void testBackoff() {
+    AX25State state = newState();
+    state.sampleRTT(200);
+    state.incrementRC();
+    assertEquals(1200, state.computeT1());
+    state.incrementRC();
+    assertEquals(2400, state.computeT1());
+    for (int i = 0; i < 10; i++) {
+      state.incrementRC();
+    }
+    assertEquals(10000, state.computeT1());
+  }
+
+  @Test
+  public void testKarn() {
+    AX25State state = newState();
+    state.storeSentIFrame(iFrame(0), true);
+    state.setAcknowledgeState((byte) 1);
+    // Retransmitted, so no sample
+    assertEquals(1000, state.getSRT());
+
+    state.storeSentIFrame(iFrame(1), false);
+    state.clearRTTSamples();
+    state.setAcknowledgeState((byte) 2);
+    assertEquals(1000, state.getSRT());
+
+    state.storeSentIFrame(iFrame(2), false);
+    state.setAcknowledgeState((byte) 3);
+    assertTrue(state.getSRT() < 1000);
+  }
+
+  private static IFrame iFrame(int ns) {
+    return IFrame.create(REMOTE, LOCAL, Command.COMMAND, (byte) ns, (byte) 0, false, Protocol.NO_LAYER3, new byte[0]);
+  }
+}
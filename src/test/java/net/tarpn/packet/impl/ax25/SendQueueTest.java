@@ -0,0 +1,68 @@
+package net.tarpn.packet.impl.ax25;
+
+import net.tarpn.config.impl.PortConfigImpl;
+import net.tarpn.datalink.DataLinkPrimitive;
+import net.tarpn.packet.impl.ax25.AX25Packet.Protocol;
+import net.tarpn.packet.impl.ax25.handlers.StateHelper;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SendQueueTest {
+
+  private static final AX25Call REMOTE = AX25Call.create("K4DBZ", 2);
+  private static final AX25Call LOCAL = AX25Call.create("KN4ORB", 1);
+
+  @Test
+  public void testBackpressure() {
+    PropertiesConfiguration config = new PropertiesConfiguration();
+    config.setProperty("l2.window", 4);
+    config.setProperty("l2.queue.frames", 8);
+    List<AX25StateEvent> events = new ArrayList<>();
+    AX25State state = new AX25State("test", REMOTE, LOCAL, new PortConfigImpl(1, config), events::add);
+    state.setState(AX25State.State.CONNECTED);
+
+    for (int i = 0; i < 8; i++) {
+      state.pushIFrame(info(i));
+    }
+    assertFalse(state.isWritable());
+    assertEquals(DataLinkPrimitive.Type.DL_FLOW_OFF, state.pollDLEvents().getType());
+    // Going over is allowed, we've just asked layer 3 to stop
+    state.pushIFrame(info(8));
+    assertNull(state.pollDLEvents());
+
+    // Only a window's worth goes out
+    List<AX25Packet> sent = new ArrayList<>();
+    StateHelper.sendPendingIFrames(state, sent::add);
+    assertEquals(4, sent.size());
+    assertEquals(9, state.getBufferedFrames());
+    assertFalse(state.isWritable());
+
+    // Acking them frees up the queue and asks for the rest to be sent
+    events.clear();
+    state.setAcknowledgeState((byte) 4);
+    assertEquals(5, state.getBufferedFrames());
+    assertFalse(state.isWritable());
+    assertEquals(AX25StateEvent.Type.IFRAME_READY, events.get(0).getType());
+
+    // Nothing is lost, and once it's down to half it asks for more
+    sent.clear();
+    StateHelper.sendPendingIFrames(state, sent::add);
+    assertEquals(4, sent.size());
+    events.clear();
+    state.setAcknowledgeState((byte) 5);
+    assertEquals(4, state.getBufferedFrames());
+    assertTrue(state.isWritable());
+    assertEquals(DataLinkPrimitive.Type.DL_FLOW_ON, state.pollDLEvents().getType());
+    assertEquals(AX25StateEvent.Type.IFRAME_READY, events.get(0).getType());
+  }
+
+  private static AX25StateEvent.InternalInfo info(int i) {
+    return (AX25StateEvent.InternalInfo) AX25StateEvent.createDataEvent(REMOTE, Protocol.NO_LAYER3, new byte[]{(byte) i})
+        .getPacket();
+  }
+}
@@ -0,0 +1,69 @@
+package net.tarpn.util;
+
+import io.netty.util.concurrent.DefaultEventExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+  private DefaultEventExecutor executor;
+  private TimerWheel wheel;
+
+  @Before
+  public void setUp() {
+    executor = new DefaultEventExecutor();
+    wheel = new TimerWheel(executor, 10, 8);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void testExpire() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    // Longer than one turn of the wheel
+    Timer timer = Timer.create(wheel, 150, () -> {
+      assertTrue(executor.inEventLoop());
+      latch.countDown();
+    });
+    timer.start();
+    assertTrue(timer.isRunning());
+    assertTrue(latch.await(2, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+    assertFalse(timer.isRunning());
+  }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+    AtomicInteger fired = new AtomicInteger();
+    Timer timer = Timer.create(wheel, 30, fired::incrementAndGet);
+    timer.start();
+    timer.cancel();
+    assertFalse(timer.isRunning());
+    Thread.sleep(100);
+    assertEquals(0, fired.get());
+  }
+
+  @Test
+  public void testRestart() throws InterruptedException {
+    AtomicInteger fired = new AtomicInteger();
+    Timer timer = Timer.create(wheel, 50, fired::incrementAndGet);
+    timer.start();
+    Thread.sleep(30);
+    timer.start();
+    Thread.sleep(30);
+    assertEquals(0, fired.get());
+    Thread.sleep(100);
+    assertEquals(1, fired.get());
+  }
+}